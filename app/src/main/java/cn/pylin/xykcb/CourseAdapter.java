@@ -2,15 +2,13 @@ package cn.pylin.xykcb;
 
 import android.app.AlertDialog;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.graphics.Typeface;
-import android.graphics.drawable.GradientDrawable;
+import android.os.Trace;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.style.AbsoluteSizeSpan;
 import android.util.TypedValue;
-import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -21,56 +19,48 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-public class CourseAdapter extends RecyclerView.Adapter<CourseAdapter.CourseViewHolder> {
-    private List<List<Course>> weeklyCourses;
+/**
+ * 课表周次翻页的数据源：每一页是一个 {@link ScheduleGridView}，显示内容和选中周次来自 {@link ScheduleViewModel}
+ * 停留在第 N 周时在后台提前构建第 N-1、N+1 周的内容，滑动时页面无需在绑定时计算
+ */
+public class CourseAdapter extends RecyclerView.Adapter<CourseAdapter.WeekPageHolder>
+        implements ScheduleGridView.OnCellClickListener {
+    // 保留最近离开的页面，滑回时直接复用，不重新绑定
+    private static final int PAGE_CACHE_SIZE = 4;
+    // 局部刷新的 payload，使页面原地更新而不是重新创建：标题行、课程格子
+    private static final Object PAYLOAD_HEADER = new Object();
+    private static final Object PAYLOAD_CELLS = new Object();
+
     private final String[] weekHeaders;
-    private final HashMap<String, Integer> courseColors = new HashMap<>();
     private final int[] colorPalette;
     private final Context context;
-    private int recyclerViewHeight = 0;
-    private final int HEADER_ROW_HEIGHT = 50;
-    private int currentWeek = 1;
+    private final ViewPager2 weekPager;
+    private final ScheduleViewModel viewModel;
+    private int currentWeek;
+    // 页数即学期周数，随课表更新
+    private int weekCount;
     private boolean showAllWeeks = false; // 新增：是否显示所有周次
-
-    // 新增方法：明确设置当前周次并刷新UI
-    public void setCurrentWeek(int week) {
-        this.currentWeek = week;
-        this.showAllWeeks = false;
-        MainActivity.Week = String.valueOf(week);
-        notifyDataSetChanged();
-    }
-
-    // 新增方法：设置显示所有周次
-    public void setShowAllWeeks(boolean showAll) {
-        this.showAllWeeks = showAll;
-        MainActivity.Week = showAll ? "all" : String.valueOf(currentWeek);
-        notifyDataSetChanged();
-    }
-
-    // 新增方法：更新课程数据
-    public void updateCourses(List<List<Course>> newWeeklyCourses) {
-        this.weeklyCourses = newWeeklyCourses;
-        // 重新分配课程颜色
-        assignCourseColors();
-        notifyDataSetChanged();
-    }
-
-    public CourseAdapter(Context context, List<List<Course>> weeklyCourses, String[] weekHeaders) {
-        this.context = context;
-        this.weeklyCourses = weeklyCourses;
+    // 最近一次保存到格子缓存的内容，未变化时不重复保存
+    private WeekRenderModel savedGridModel;
+    // 各页面标题行日期所用的学期日历，日历更新后才需要重新绑定标题行
+    private SemesterCalendar boundCalendar;
+
+    public CourseAdapter(AppCompatActivity activity, ViewPager2 weekPager, ScheduleViewModel viewModel, String[] weekHeaders) {
+        this.context = activity;
+        this.weekPager = weekPager;
+        this.viewModel = viewModel;
         this.weekHeaders = weekHeaders;
-        this.currentWeek = Integer.parseInt(MainActivity.Week);
+        this.currentWeek = viewModel.getCurrentWeek();
+        this.showAllWeeks = viewModel.isShowingAllWeeks();
+        this.weekCount = viewModel.getWeekCount();
 
         colorPalette = new int[]{
                 ContextCompat.getColor(context, R.color.course_color_1),
@@ -82,675 +72,435 @@ public class CourseAdapter extends RecyclerView.Adapter<CourseAdapter.CourseView
                 ContextCompat.getColor(context, R.color.course_color_7)
         };
 
-        assignCourseColors();
+        // 相邻页面提前创建并绑定，离开的页面保留在缓存中
+        weekPager.setOffscreenPageLimit(1);
+        View pagerContent = weekPager.getChildAt(0);
+        if (pagerContent instanceof RecyclerView) {
+            pagerContent.setOverScrollMode(View.OVER_SCROLL_NEVER);
+            ((RecyclerView) pagerContent).setItemViewCacheSize(PAGE_CACHE_SIZE);
+        }
+        weekPager.setAdapter(this);
+        weekPager.setCurrentItem(currentWeek - 1, false);
+        weekPager.setUserInputEnabled(!showAllWeeks);
+        weekPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                // 滑动切换周次；全部周次模式下禁止滑动，不会由用户触发
+                if (!showAllWeeks) {
+                    viewModel.selectWeek(position + 1);
+                }
+            }
+
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                if (state == ViewPager2.SCROLL_STATE_IDLE) {
+                    saveGridSnapshot();
+                }
+            }
+        });
+
+        viewModel.getSelectedWeek().observe(activity, this::onSelectedWeekChanged);
+        // 各页面只重建内容变化的格子；学期日期随数据一起更新时标题行也一起刷新
+        viewModel.getRenderGeneration().observe(activity, generation -> {
+            updateWeekCount();
+            SemesterCalendar calendar = SemesterCalendar.get(context);
+            if (calendar != boundCalendar) {
+                boundCalendar = calendar;
+                notifyItemRangeChanged(0, getItemCount(), PAYLOAD_HEADER);
+            }
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CELLS);
+            saveGridSnapshot();
+        });
     }
 
-    public void setRecyclerViewHeight(int height) {
-        this.recyclerViewHeight = height;
-        notifyDataSetChanged();
+    // 课表更新后学期周数可能变化，增减末尾的页面
+    private void updateWeekCount() {
+        int oldCount = weekCount;
+        weekCount = viewModel.getWeekCount();
+        if (weekCount > oldCount) {
+            notifyItemRangeInserted(oldCount, weekCount - oldCount);
+        } else if (weekCount < oldCount) {
+            notifyItemRangeRemoved(weekCount, oldCount - weekCount);
+        }
     }
 
-    private void assignCourseColors() {
-        // 优化后的颜色分配算法，避免相同颜色聚集
-        Map<String, Set<Integer>> coursePositionMap = new HashMap<>(); // 记录每门课程的位置
-        
-        // 第一步：收集所有课程名称和位置信息
-        Set<String> allCourseNames = new HashSet<>();
-        for (int day = 0; day < weeklyCourses.size(); day++) {
-            for (Course course : weeklyCourses.get(day)) {
-                String courseName = course.getCourseName();
-                allCourseNames.add(courseName);
-                
-                // 记录课程位置
-                if (!coursePositionMap.containsKey(courseName)) {
-                    coursePositionMap.put(courseName, new HashSet<>());
-                }
-                
-                // 添加课程的所有时间段位置
-                for (int timeSlot = 1; timeSlot <= 5; timeSlot++) {
-                    if (course.isInTimeSlot(day + 1, timeSlot)) {
-                        coursePositionMap.get(courseName).add(day * 10 + timeSlot); // 用day*10+timeSlot作为唯一位置标识
-                    }
-                }
-            }
+    /**
+     * 课表停在本周且内容来自完整数据时，保存格子供下次启动直接绘制
+     */
+    private void saveGridSnapshot() {
+        if (showAllWeeks || !viewModel.hasFullCourses()
+                || currentWeek != CourseDataManager.getCurrentWeek(context)) {
+            return;
         }
-        
-        // 第二步：为每门课程分配颜色，确保相邻课程颜色不同
-        List<String> courseList = new ArrayList<>(allCourseNames);
-        
-        // 按课程出现次数排序，先处理出现次数多的课程
-        courseList.sort((a, b) -> coursePositionMap.get(b).size() - coursePositionMap.get(a).size());
-        
-        for (String courseName : courseList) {
-            if (!courseColors.containsKey(courseName)) {
-                // 获取已分配颜色的课程及其位置
-                Map<String, Set<Integer>> coloredCoursePositions = new HashMap<>();
-                for (Map.Entry<String, Integer> entry : courseColors.entrySet()) {
-                    String coloredCourse = entry.getKey();
-                    if (coursePositionMap.containsKey(coloredCourse)) {
-                        coloredCoursePositions.put(coloredCourse, coursePositionMap.get(coloredCourse));
-                    }
-                }
-                
-                // 选择最优颜色
-                int selectedColorIndex = selectOptimalColor(courseName, coursePositionMap.get(courseName), coloredCoursePositions);
-                courseColors.put(courseName, colorPalette[selectedColorIndex]);
-            }
+        WeekRenderModel model = viewModel.getRenderModel(currentWeek);
+        if (model != savedGridModel) {
+            savedGridModel = model;
+            GridSnapshot.write(context, model, buildDayHeaders(currentWeek));
         }
     }
-    
-    // 选择最优颜色：优先选择与相邻课程不同的颜色
-    private int selectOptimalColor(String courseName, Set<Integer> coursePositions, Map<String, Set<Integer>> coloredCoursePositions) {
-        // 统计每种颜色的冲突分数（与相邻课程同色）
-        int[] colorConflictScore = new int[colorPalette.length];
-        // 统计每种颜色的使用次数
-        int[] colorUsageCount = new int[colorPalette.length];
-        
-        // 初始化数组
-        for (int i = 0; i < colorPalette.length; i++) {
-            colorConflictScore[i] = 0;
-            colorUsageCount[i] = 0;
+
+    // 新增方法：明确设置当前周次并刷新UI
+    public void setCurrentWeek(int week) {
+        viewModel.selectWeek(week);
+    }
+
+    // 新增方法：设置显示所有周次
+    public void setShowAllWeeks(boolean showAll) {
+        if (showAll) {
+            viewModel.showAllWeeks();
+        } else {
+            viewModel.selectWeek(viewModel.getCurrentWeek());
         }
-        
-        // 计算每种颜色的使用次数
-        for (Map.Entry<String, Integer> entry : courseColors.entrySet()) {
-            for (int i = 0; i < colorPalette.length; i++) {
-                if (entry.getValue().equals(colorPalette[i])) {
-                    colorUsageCount[i]++;
-                    break;
-                }
-            }
+    }
+
+    private void onSelectedWeekChanged(int selectedWeek) {
+        // 选中的周次可能在新课表的内容构建完成之前就超出原来的页数
+        updateWeekCount();
+        boolean showAll = selectedWeek == ScheduleIndex.ALL_WEEKS;
+        boolean modeChanged = showAll != showAllWeeks;
+        showAllWeeks = showAll;
+        currentWeek = viewModel.getCurrentWeek();
+        // 全部周次只有一页内容，禁止滑动切换
+        weekPager.setUserInputEnabled(!showAll);
+        if (modeChanged) {
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_HEADER);
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CELLS);
         }
-        
-        // 计算每种颜色的冲突分数
-        for (Map.Entry<String, Set<Integer>> entry : coloredCoursePositions.entrySet()) {
-            String coloredCourse = entry.getKey();
-            Set<Integer> coloredPositions = entry.getValue();
-            int coloredColorIndex = -1;
-            
-            // 找到已着色课程的颜色索引
-            for (int i = 0; i < colorPalette.length; i++) {
-                if (courseColors.get(coloredCourse).equals(colorPalette[i])) {
-                    coloredColorIndex = i;
-                    break;
-                }
-            }
-            
-            if (coloredColorIndex >= 0) {
-                // 检查位置是否相邻
-                for (int pos1 : coursePositions) {
-                    for (int pos2 : coloredPositions) {
-                        if (arePositionsAdjacent(pos1, pos2)) {
-                            colorConflictScore[coloredColorIndex]++;
-                        }
-                    }
-                }
-            }
+        if (weekPager.getCurrentItem() != currentWeek - 1) {
+            weekPager.setCurrentItem(currentWeek - 1, false);
         }
-        
-        // 选择冲突分数最低且使用次数较少的颜色
-        int bestColorIndex = 0;
-        int bestScore = Integer.MAX_VALUE;
-        
-        for (int i = 0; i < colorPalette.length; i++) {
-            // 综合考虑冲突分数和使用次数，冲突分数权重更高
-            int currentScore = colorConflictScore[i] * 100 + colorUsageCount[i];
-            
-            if (currentScore < bestScore) {
-                bestScore = currentScore;
-                bestColorIndex = i;
-            }
+        // 滑动或跳转到某一周后，预取前后两周
+        if (!showAll) {
+            viewModel.prefetch(currentWeek - 1, currentWeek + 1);
         }
-        
-        return bestColorIndex;
     }
-    
-    // 判断两个位置是否相邻（同一时间段、同一列或同一行）
-    private boolean arePositionsAdjacent(int pos1, int pos2) {
-        int day1 = pos1 / 10;
-        int time1 = pos1 % 10;
-        int day2 = pos2 / 10;
-        int time2 = pos2 % 10;
-        
-        // 同一时间段（水平相邻）
-        if (time1 == time2 && Math.abs(day1 - day2) <= 1) {
-            return true;
-        }
-        
-        // 同一天（垂直相邻）
-        if (day1 == day2 && Math.abs(time1 - time2) <= 1) {
-            return true;
+
+    private String[] buildDayHeaders(int week) {
+        String[] dayHeaders = new String[7];
+        // 修改日期显示逻辑：全部周次时清空日期，正常周次时显示日期
+        if (week == ScheduleIndex.ALL_WEEKS) {
+            // 全部周次模式：只显示周一到周日，不显示具体日期
+            System.arraycopy(weekHeaders, 0, dayHeaders, 0, 7);
+        } else {
+            // 正常周次模式：显示周几和具体日期
+            String[] weekDates = SemesterCalendar.get(context).getDateLabels(week);
+            for (int i = 0; i < 7; i++) {
+                dayHeaders[i] = weekHeaders[i] + "\n" + weekDates[i]; // 一行周，一行日期
+            }
         }
-        
-        return false;
+        return dayHeaders;
     }
 
     @NonNull
     @Override
-    public CourseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_course, parent, false);
-        return new CourseViewHolder(view);
+    public WeekPageHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ScheduleGridView gridView = new ScheduleGridView(parent.getContext());
+        // ViewPager2 要求页面占满整个容器
+        gridView.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        gridView.setColorPalette(colorPalette);
+        gridView.setOnCellClickListener(this);
+        return new WeekPageHolder(gridView);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull CourseViewHolder holder, int position) {
-        int headerHeightPx = (int) (HEADER_ROW_HEIGHT * context.getResources().getDisplayMetrics().density);
+    public void onBindViewHolder(@NonNull WeekPageHolder holder, int position) {
+        holder.bind(position + 1);
+    }
 
-        int rowHeight;
-        if (position == 0) {
-            rowHeight = headerHeightPx;
-        } else {
-            int remainingHeight = recyclerViewHeight - headerHeightPx;
-            int courseRowCount = getItemCount() - 1;
-            rowHeight = remainingHeight > 0 ? remainingHeight / courseRowCount : ViewGroup.LayoutParams.WRAP_CONTENT;
+    @Override
+    public void onBindViewHolder(@NonNull WeekPageHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
         }
 
-        ViewGroup.LayoutParams params = holder.itemView.getLayoutParams();
-        params.height = rowHeight;
-        holder.itemView.setLayoutParams(params);
-
-        if (position == 0) {
-            holder.bindHeader();
-        } else {
-            holder.bindTimeRow(position);
+        // 合并多次通知的 payload
+        boolean headerChanged = false;
+        boolean cellsChanged = false;
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_HEADER) {
+                headerChanged = true;
+            } else if (payload == PAYLOAD_CELLS) {
+                cellsChanged = true;
+            }
+        }
+        Trace.beginSection("xykcb:bindWeekPage");
+        try {
+            if (headerChanged) {
+                holder.bindHeader(position + 1);
+            }
+            if (cellsChanged) {
+                holder.bindCells(position + 1);
+            }
+        } finally {
+            Trace.endSection();
         }
     }
 
     @Override
     public int getItemCount() {
-        return 6;
+        return weekCount;
     }
 
-    class CourseViewHolder extends RecyclerView.ViewHolder {
-        private final TextView timeHeader;
-        private final CourseTextView[] dayViews = new CourseTextView[7]; // 改为CourseTextView类型
-
-        CourseViewHolder(@NonNull View itemView) {
-            super(itemView);
-            timeHeader = itemView.findViewById(R.id.time_header);
-            dayViews[0] = itemView.findViewById(R.id.monday);
-            dayViews[1] = itemView.findViewById(R.id.tuesday);
-            dayViews[2] = itemView.findViewById(R.id.wednesday);
-            dayViews[3] = itemView.findViewById(R.id.thursday);
-            dayViews[4] = itemView.findViewById(R.id.friday);
-            dayViews[5] = itemView.findViewById(R.id.saturday);
-            dayViews[6] = itemView.findViewById(R.id.sunday);
+    @Override
+    public void onWeekHeaderClick() {
+        Trace.beginSection("xykcb:showWeekSwitchMenu");
+        try {
+            showWeekSwitchMenu();
+        } finally {
+            Trace.endSection();
         }
+    }
 
-        void bindHeader() {
-            SpannableString weekText = new SpannableString((showAllWeeks ? "N" : currentWeek) + "周");
-            weekText.setSpan(
-                    new AbsoluteSizeSpan(22, true),
-                    0,
-                    String.valueOf(showAllWeeks ? "N" : currentWeek).length(),
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-            );
-            weekText.setSpan(
-                    new AbsoluteSizeSpan(12, true),
-                    String.valueOf(showAllWeeks ? "N" : currentWeek).length(),
-                    weekText.length(),
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-            );
-
-            timeHeader.setText(weekText);
-            timeHeader.setTextColor(Color.WHITE);
-            timeHeader.setPadding(0, 0, 0, 0);
-            GradientDrawable drawable = new GradientDrawable();
-            drawable.setColor(Color.parseColor("#566573"));
-            drawable.setCornerRadius(10f);
-            timeHeader.setBackground(drawable);
-
-            // 修改日期显示逻辑：全部周次时清空日期，正常周次时显示日期
-            if (showAllWeeks) {
-                // 全部周次模式：只显示周一到周日，不显示具体日期
-                for (int i = 0; i < 7; i++) {
-                    String header = weekHeaders[i]; // 周一、周二...
-                    dayViews[i].setText(header); // 只显示周几，不显示日期
-                    dayViews[i].setTextSize(14);
-                    dayViews[i].setGravity(Gravity.CENTER);
-                    dayViews[i].setBackgroundColor(Color.TRANSPARENT);
-                    dayViews[i].setOnClickListener(null);
-                    // 确保标题行隐藏角标
-                    dayViews[i].setBadgeVisible(false);
-                }
-            } else {
-                // 正常周次模式：显示周几和具体日期
-                SharedPreferences sp = context.getSharedPreferences("WeekDates", Context.MODE_PRIVATE);
-                String weekDatesStr = sp.getString(String.valueOf(currentWeek), null);
-                String[] weekDates = new String[]{"", "", "", "", "", "", ""}; // 默认空防止异常
-                if (weekDatesStr != null) {
-                    weekDates = weekDatesStr.split(",");
-                }
-
-                for (int i = 0; i < 7; i++) {
-                    String header = weekHeaders[i]; // 周一、周二...
-                    String date = weekDates[i]; // 03/04 这种
-                    dayViews[i].setText(header + "\n" + date); // 一行周，一行日期
-                    dayViews[i].setTextSize(14);
-                    dayViews[i].setGravity(Gravity.CENTER); // 让文字居中好看
-                    dayViews[i].setBackgroundColor(Color.TRANSPARENT);
-                    dayViews[i].setOnClickListener(null);
-                    // 确保标题行隐藏角标
-                    dayViews[i].setBadgeVisible(false);
-                }
-            }
-
-            timeHeader.setOnClickListener(v -> showWeekSwitchMenu(v));
+    @Override
+    public void onCourseCellClick(CellRenderModel cell, int weekday, int slot) {
+        Trace.beginSection("xykcb:showCourseInfoDialog");
+        try {
+            showCourseInfoDialog(cell.getCourses(), weekday, slot);
+        } finally {
+            Trace.endSection();
         }
+    }
 
-        void bindTimeRow(int timeSlot) {
-            // 检测屏幕方向
-            boolean isLandscape = context.getResources().getConfiguration().orientation == android.content.res.Configuration.ORIENTATION_LANDSCAPE;
-            
-            String[] timeNames;
-            if (isLandscape) {
-                // 横屏时使用水平排列的文本
-                timeNames = new String[]{"", "第一大节", "第二大节", "第三大节", "第四大节", "第五大节"};
-            } else {
-                // 竖屏时使用原来的竖直排列文本
-                timeNames = new String[]{"", "第\n一\n大\n节", "第\n二\n大\n节", "第\n三\n大\n节", "第\n四\n大\n节", "第\n五\n大\n节"};
-            }
-            
-            timeHeader.setText(timeNames[timeSlot]);
-            timeHeader.setBackgroundColor(Color.TRANSPARENT);
-
-            for (int day = 0; day < 7; day++) {
-                StringBuilder courseInfo = new StringBuilder();
-                boolean hasCourse = false;
-                int courseCount = 0;
-                Course displayCourse = null;
-                List<Course> allCoursesInSlot = new ArrayList<>(); // 新增：收集所有重叠课程
-
-                for (Course course : weeklyCourses.get(day)) {
-                    if (course.isInTimeSlot(day + 1, timeSlot) &&
-                            (showAllWeeks || course.isInWeek(currentWeek))) {
-
-                        courseCount++;
-                        allCoursesInSlot.add(course); // 添加到重叠课程列表
-                        
-                        if (displayCourse == null || getFirstWeek(course.getclassWeek()) < getFirstWeek(displayCourse.getclassWeek())) {
-                            displayCourse = course;
-                        }
-                    }
-                }
-
-                if (displayCourse != null) {
-                    String courseName = displayCourse.getCourseName();
-                    // 检查是否为自定义课程
-                    boolean isCustomCourse = courseName.contains("(自定义)") || displayCourse.getLocation().contains("(自定义)");
-                    if (isCustomCourse) {
-                        courseName = courseName + " (自定义)";
-                    }
-                    String shortenedName = courseName;
-                    int visualLength = getVisualLength(courseName);
-                    if (visualLength > 9) {
-                        shortenedName = truncateString(courseName, 5, 0);
-                    }
-
-                    String location = displayCourse.getLocation()
-                            .replace("(智慧教室)", "")
-                            .replace("（智慧教室）", "")
-                            .replace("(多媒体)", "")
-                            .replace("（多媒体）", "")
-                            .replace("(语音室)", "")
-                            .replace("（语音室）", "")
-                            .trim();
-                    if (getVisualLength(location) > 6) {
-                        location = truncateString(location, 5, 0);
-                    }
-
-                    String teacher = displayCourse.getTeacher();
-                    teacher = teacher.replace(",", "\n").replace("，", "\n").replace("、", "\n").replace(";", "\n").replace("；", "\n");
-                    if (getVisualLength(teacher) > 6) {
-                        teacher = truncateString(teacher, 5, 0);
-                    }
-
-                    if (isLandscape) {
-                        // 横屏时减少换行，使用更紧凑的格式
-                        courseInfo.append(shortenedName)
-                                .append("\n")
-                                .append(location)
-                                .append("\n")
-                                .append(teacher);
-                    } else {
-                        // 竖屏时使用原来的格式
-                        courseInfo.append(shortenedName)
-                                .append("\n\n")
-                                .append(location)
-                                .append("\n")
-                                .append(teacher)
-                                .append("\n");
-                    }
-
-                    int color = courseColors.get(displayCourse.getCourseName());
-                    GradientDrawable drawable = new GradientDrawable();
-                    drawable.setColor(color);
-                    drawable.setCornerRadius(5);
-
-                    dayViews[day].setBackground(drawable);
-                    dayViews[day].setPadding(5, 5, 5, 5);
-                    List<Course> finalAllCoursesInSlot = allCoursesInSlot;
-                    int finalDay = day;
-                    int finalTimeSlot = timeSlot;
-                    dayViews[day].setOnClickListener(v -> showCourseInfoDialog(finalAllCoursesInSlot, finalDay + 1, finalTimeSlot));
-                    hasCourse = true;
-
-                    // 在bindTimeRow方法中，将原来的CompoundDrawable代码替换为：
-                    // 如果有多个课程，显示角标
-                    if (courseCount > 1) {
-                        dayViews[day].setBadgeVisible(true);
-                        // 可以根据课程颜色设置角标颜色
-                        dayViews[day].setBadgeColor(ContextCompat.getColor(context, R.color.red)); // 使用color/red资源
-                    } else {
-                        dayViews[day].setBadgeVisible(false);
-                    }
-                }
-
-                if (!hasCourse) {
-                    dayViews[day].setBackgroundColor(Color.TRANSPARENT);
-                    dayViews[day].setOnClickListener(null);
-                    dayViews[day].setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
-                    // 确保没有课程时隐藏角标
-                    dayViews[day].setBadgeVisible(false);
-                }
+    class WeekPageHolder extends RecyclerView.ViewHolder {
+        private final ScheduleGridView gridView;
 
-                dayViews[day].setText(courseInfo.toString().trim());
-                dayViews[day].setTextSize(12);
-            }
+        WeekPageHolder(@NonNull ScheduleGridView gridView) {
+            super(gridView);
+            this.gridView = gridView;
         }
 
-        // 新增方法：获取课程的第一周
-        private int getFirstWeek(String weekRange) {
-            if (weekRange == null || weekRange.isEmpty()) return 1;
+        /**
+         * 显示内容直接取自预先构建的 WeekRenderModel，未构建到时才在当前线程构建
+         */
+        void bind(int week) {
+            Trace.beginSection("xykcb:bindWeekPage");
             try {
-                String[] parts = weekRange.split("-");
-                return Integer.parseInt(parts[0]);
-            } catch (Exception e) {
-                return 1;
+                bindHeader(week);
+                bindCells(week);
+            } finally {
+                Trace.endSection();
             }
         }
 
-        private void showCourseInfoDialog(List<Course> courses, int dayOfWeek, int timeSlot) {
-            AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.DialogTheme);
-            View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_main, null);
-
-            TextView tvCourseName = dialogView.findViewById(R.id.tvCourseName);
-            LinearLayout courseContainer = dialogView.findViewById(R.id.courseContainer);
-            Button btnClose = dialogView.findViewById(R.id.btn_close); // 新增：获取关闭按钮
-
-            // 设置标题
-            String[] dayNames = {"周一", "周二", "周三", "周四", "周五", "周六", "周日"};
-            String[] timeNames = {"", "第一大节", "第二大节", "第三大节", "第四大节", "第五大节"};
-            tvCourseName.setText(dayNames[dayOfWeek - 1] + " " + timeNames[timeSlot]);
-        
-            // 清空容器
-            courseContainer.removeAllViews();
-        
-            // 为每个课程创建信息块
-            for (int i = 0; i < courses.size(); i++) {
-                Course course = courses.get(i);
-                
-                // 创建课程信息容器
-                LinearLayout courseInfoLayout = new LinearLayout(context);
-                courseInfoLayout.setOrientation(LinearLayout.VERTICAL);
-                courseInfoLayout.setBackground(ContextCompat.getDrawable(context, R.drawable.edit_text_background));
-                
-                LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT
-                );
-                layoutParams.setMargins(0, 0, 0, (int) TypedValue.applyDimension(
-                    TypedValue.COMPLEX_UNIT_DIP, 10, context.getResources().getDisplayMetrics()));
-                courseInfoLayout.setLayoutParams(layoutParams);
-            
-                // 课程名称和类型标识
-                TextView courseNameView = new TextView(context);
-                String courseName = course.getCourseName();
-                // 检查是否为自定义课程（通过检查是否有自定义课程的特殊标识）
-                boolean isCustomCourse = courseName.contains("(自定义)") || course.getLocation().contains("(自定义)");
-                if (isCustomCourse) {
-                    courseNameView.setText(courseName + " (自定义)");
-                } else {
-                    courseNameView.setText(courseName);
-                }
-                courseNameView.setTextSize(18);
-                courseNameView.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
-                courseNameView.setTypeface(null, Typeface.BOLD);
-                courseNameView.setPadding(24, 20, 12, 4);
-                courseInfoLayout.addView(courseNameView);
-            
-                // 地点 - 增加左边距
-                TextView locationView = new TextView(context);
-                locationView.setText("地点：" + course.getLocation());
-                locationView.setTextSize(16);
-                locationView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
-                locationView.setPadding(48, 4, 12, 4); // 左边距从12增加到24
-                courseInfoLayout.addView(locationView);
-            
-                // 教师 - 增加左边距
-                TextView teacherView = new TextView(context);
-                teacherView.setText("教师：" + course.getTeacher());
-                teacherView.setTextSize(16);
-                teacherView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
-                teacherView.setPadding(48, 4, 12, 4); // 左边距从12增加到24
-                courseInfoLayout.addView(teacherView);
-            
-                // 周次 - 增加左边距
-                TextView timeView = new TextView(context);
-                // 使用classWeekDetails显示准确的周次信息，并优化显示格式
-                String weekInfo;
-                if (course.classWeekDetails != null && !course.classWeekDetails.isEmpty()) {
-                    // 将逗号分隔的周次数字转换为友好的显示格式
-                    weekInfo = formatWeekDetails(course.classWeekDetails);
-                } else {
-                    weekInfo = course.getclassWeek();
-                }
-                timeView.setText("周次：" + weekInfo);
-                timeView.setTextSize(16);
-                timeView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
-                timeView.setPadding(48, 4, 12, 12); // 左边距从12增加到24
-                courseInfoLayout.addView(timeView);
-            
-                courseContainer.addView(courseInfoLayout);
-            }
-        
-            builder.setView(dialogView);
-            AlertDialog dialog = builder.create();
-            
-            // 新增：设置关闭按钮点击事件和文本
-            btnClose.setText("关闭");
-            btnClose.setOnClickListener(v -> dialog.dismiss());
-            
-            dialog.show();
+        void bindHeader(int week) {
+            int displayWeek = showAllWeeks ? ScheduleIndex.ALL_WEEKS : week;
+            // 刚启动时使用格子缓存中的标题行，不必为此读取学期日历
+            String[] dayHeaders = viewModel.getGridSnapshotHeaders(displayWeek);
+            gridView.setHeader(showAllWeeks ? "N" : String.valueOf(week),
+                    dayHeaders != null ? dayHeaders : buildDayHeaders(displayWeek));
         }
 
-        private String truncateString(String input, int frontLength, int backLength) {
-            int visualLength = getVisualLength(input);
-            if (visualLength > frontLength + backLength) {
-                double visualCutLength = 0;
-                int realCutIndex = 0;
-
-                while (visualCutLength < frontLength && realCutIndex < input.length()) {
-                    char c = input.charAt(realCutIndex);
-                    visualCutLength += isEnglishLetter(c) ? 0.5 : 1;
-                    realCutIndex++;
-                }
-
-                String firstPart = input.substring(0, realCutIndex);
-
-                double reverseVisualCutLength = 0;
-                int reverseRealCutIndex = input.length();
-
-                while (reverseVisualCutLength < backLength && reverseRealCutIndex > 0) {
-                    reverseRealCutIndex--;
-                    char c = input.charAt(reverseRealCutIndex);
-                    reverseVisualCutLength += isEnglishLetter(c) ? 0.5 : 1;
-                }
-
-                String lastPart = input.substring(reverseRealCutIndex);
-
-                return firstPart + "..." + lastPart;
-            }
-            return input;
+        void bindCells(int week) {
+            gridView.setWeekModel(viewModel.getRenderModel(showAllWeeks ? ScheduleIndex.ALL_WEEKS : week));
         }
+    }
 
-        private int getVisualLength(String input) {
-            int englishCount = 0;
-            for (int i = 0; i < input.length(); i++) {
-                char c = input.charAt(i);
-                if (isEnglishLetter(c)) {
-                    englishCount++;
-                }
-            }
-            int otherCount = input.length() - englishCount;
-            return otherCount + (englishCount + 1) / 2;
-        }
+    private void showCourseInfoDialog(List<Course> courses, int dayOfWeek, int timeSlot) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.DialogTheme);
+        View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_main, null);
 
-        private boolean isEnglishLetter(char c) {
-            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
-        }
+        TextView tvCourseName = dialogView.findViewById(R.id.tvCourseName);
+        LinearLayout courseContainer = dialogView.findViewById(R.id.courseContainer);
+        Button btnClose = dialogView.findViewById(R.id.btn_close); // 新增：获取关闭按钮
 
-        private void showWeekSwitchMenu(View view) {
-            AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.DialogTheme);
-            View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_week_selector, null);
-            final AlertDialog dialog = builder.setView(dialogView).create();
-        
-            GridView weekGrid = dialogView.findViewById(R.id.weekGrid);
-            Button btnReturnCurrentWeek = dialogView.findViewById(R.id.btnReturnCurrentWeek);
-            Button btnAllWeeks = dialogView.findViewById(R.id.btnAllWeeks);
+        // 设置标题
+        String[] dayNames = {"周一", "周二", "周三", "周四", "周五", "周六", "周日"};
+        String[] timeNames = {"", "第一大节", "第二大节", "第三大节", "第四大节", "第五大节"};
+        tvCourseName.setText(dayNames[dayOfWeek - 1] + " " + timeNames[timeSlot]);
+    
+        // 清空容器
+        courseContainer.removeAllViews();
+    
+        // 为每个课程创建信息块
+        for (int i = 0; i < courses.size(); i++) {
+            Course course = courses.get(i);
+            
+            // 创建课程信息容器
+            LinearLayout courseInfoLayout = new LinearLayout(context);
+            courseInfoLayout.setOrientation(LinearLayout.VERTICAL);
+            courseInfoLayout.setBackground(ContextCompat.getDrawable(context, R.drawable.edit_text_background));
+            
+            LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+            );
+            layoutParams.setMargins(0, 0, 0, (int) TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP, 10, context.getResources().getDisplayMetrics()));
+            courseInfoLayout.setLayoutParams(layoutParams);
         
-            final List<Integer> weeks = new ArrayList<>();
-            for (int i = 1; i <= 24; i++) {
-                weeks.add(i);
+            // 课程名称和类型标识
+            TextView courseNameView = new TextView(context);
+            String courseName = course.getCourseName();
+            // 检查是否为自定义课程（通过检查是否有自定义课程的特殊标识）
+            boolean isCustomCourse = courseName.contains("(自定义)") || course.getLocation().contains("(自定义)");
+            if (isCustomCourse) {
+                courseNameView.setText(courseName + " (自定义)");
+            } else {
+                courseNameView.setText(courseName);
             }
+            courseNameView.setTextSize(18);
+            courseNameView.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
+            courseNameView.setTypeface(null, Typeface.BOLD);
+            courseNameView.setPadding(24, 20, 12, 4);
+            courseInfoLayout.addView(courseNameView);
         
-            // 设置全部周次按钮的初始状态
-            updateAllWeeksButtonState(btnAllWeeks);
-        
-            ArrayAdapter<Integer> adapter = new ArrayAdapter<Integer>(context, R.layout.item_week_button, weeks) {
-                @NonNull
-                @Override
-                public View getView(int position, View convertView, @NonNull ViewGroup parent) {
-                    View view = convertView;
-                    if (view == null) {
-                        view = LayoutInflater.from(context).inflate(R.layout.item_week_button, parent, false);
-                    }
+            // 地点 - 增加左边距
+            TextView locationView = new TextView(context);
+            locationView.setText("地点：" + course.getLocation());
+            locationView.setTextSize(16);
+            locationView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
+            locationView.setPadding(48, 4, 12, 4); // 左边距从12增加到24
+            courseInfoLayout.addView(locationView);
         
-                    Button button = view.findViewById(R.id.weekButton);
-                    int week = weeks.get(position);
-                    button.setText("第" + week + "周");
+            // 教师 - 增加左边距
+            TextView teacherView = new TextView(context);
+            teacherView.setText("教师：" + course.getTeacher());
+            teacherView.setTextSize(16);
+            teacherView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
+            teacherView.setPadding(48, 4, 12, 4); // 左边距从12增加到24
+            courseInfoLayout.addView(teacherView);
         
-                    if (week == currentWeek && !showAllWeeks) {
-                        button.setBackgroundResource(R.drawable.tag_button_selected);
-                        button.setTextColor(Color.WHITE);
-                    } else {
-                        button.setBackgroundResource(R.drawable.tag_button_normal);
-                        button.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
-                    }
-        
-                    button.setOnClickListener(v -> {
-                        // 使用新的setCurrentWeek方法
-                        setCurrentWeek(week);
-                        dialog.dismiss();
-                    });
-                    return view;
-                }
-            };
-        
-            weekGrid.setAdapter(adapter);
-        
-            btnReturnCurrentWeek.setOnClickListener(v -> {
-                // 获取当前周次并设置
-                int currentWeekNum = CourseDataManager.getCurrentWeek(context);
-                setCurrentWeek(currentWeekNum);
-                dialog.dismiss();
-            });
-        
-            btnAllWeeks.setOnClickListener(v -> {
-                // 使用新的setShowAllWeeks方法
-                setShowAllWeeks(true);
-                dialog.dismiss();
-            });
-        
-            dialog.show();
-        }
-        
-        // 新增方法：更新全部周次按钮状态
-        private void updateAllWeeksButtonState(Button btnAllWeeks) {
-            if (showAllWeeks) {
-                btnAllWeeks.setBackgroundResource(R.drawable.tag_button_selected);
-                btnAllWeeks.setTextColor(Color.WHITE);
+            // 周次 - 增加左边距
+            TextView timeView = new TextView(context);
+            // 使用classWeekDetails显示准确的周次信息，并优化显示格式
+            String weekInfo;
+            if (course.getClassWeekDetails() != null && !course.getClassWeekDetails().isEmpty()) {
+                // 将逗号分隔的周次数字转换为友好的显示格式
+                weekInfo = WeekRanges.format(course.getClassWeekDetails());
             } else {
-                btnAllWeeks.setBackgroundResource(R.drawable.tag_button_normal);
-                btnAllWeeks.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
+                weekInfo = course.getclassWeek();
             }
+            timeView.setText("周次：" + weekInfo);
+            timeView.setTextSize(16);
+            timeView.setTextColor(ContextCompat.getColor(context, R.color.info_text_color));
+            timeView.setPadding(48, 4, 12, 12); // 左边距从12增加到24
+            courseInfoLayout.addView(timeView);
+        
+            courseContainer.addView(courseInfoLayout);
         }
+    
+        builder.setView(dialogView);
+        AlertDialog dialog = builder.create();
         
-        /**
-         * 将逗号分隔的周次数字转换为友好的显示格式
-         * 例如："2,3,4,6,7,8" -> "2-4、6-8"
-         * "2,4,5,6" -> "2、4-6"
-         */
-        private String formatWeekDetails(String weekDetails) {
-            if (weekDetails == null || weekDetails.isEmpty()) {
-                return "";
-            }
-            
-            // 解析周次数字
-            String[] weekArray = weekDetails.split(",");
-            List<Integer> weeks = new ArrayList<>();
-            for (String weekStr : weekArray) {
-                try {
-                    weeks.add(Integer.parseInt(weekStr.trim()));
-                } catch (NumberFormatException e) {
-                    // 忽略无效数字
+        // 新增：设置关闭按钮点击事件和文本
+        btnClose.setText("关闭");
+        btnClose.setOnClickListener(v -> dialog.dismiss());
+        
+        dialog.show();
+        FrameStats.trackDialog(dialog, "CourseInfoDialog");
+    }
+
+    private void showWeekSwitchMenu() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.DialogTheme);
+        View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_week_selector, null);
+        final AlertDialog dialog = builder.setView(dialogView).create();
+    
+        GridView weekGrid = dialogView.findViewById(R.id.weekGrid);
+        Button btnReturnCurrentWeek = dialogView.findViewById(R.id.btnReturnCurrentWeek);
+        Button btnAllWeeks = dialogView.findViewById(R.id.btnAllWeeks);
+        Button btnTermOverview = dialogView.findViewById(R.id.btnTermOverview);
+    
+        // 每周的上课节数与学期总览来自同一次统计，周次数量也与学期总览一致
+        final TermOverview overview = viewModel.getTermOverview();
+        final List<Integer> weeks = new ArrayList<>();
+        for (int i = 1; i <= overview.getWeekCount(); i++) {
+            weeks.add(i);
+        }
+        final int countTextSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 11,
+                context.getResources().getDisplayMetrics());
+    
+        // 设置全部周次按钮的初始状态
+        updateAllWeeksButtonState(btnAllWeeks);
+    
+        ArrayAdapter<Integer> adapter = new ArrayAdapter<Integer>(context, R.layout.item_week_button, weeks) {
+            @NonNull
+            @Override
+            public View getView(int position, View convertView, @NonNull ViewGroup parent) {
+                View view = convertView;
+                if (view == null) {
+                    view = LayoutInflater.from(context).inflate(R.layout.item_week_button, parent, false);
                 }
-            }
-            
-            if (weeks.isEmpty()) {
-                return "";
-            }
-            
-            // 排序周次
-            Collections.sort(weeks);
-            
-            StringBuilder result = new StringBuilder();
-            int start = weeks.get(0);
-            int end = weeks.get(0);
-            
-            for (int i = 1; i < weeks.size(); i++) {
-                if (weeks.get(i) == end + 1) {
-                    // 连续数字，扩展范围
-                    end = weeks.get(i);
+    
+                Button button = view.findViewById(R.id.weekButton);
+                int week = weeks.get(position);
+                int classCount = overview.getWeekClassCount(week);
+                String countText = classCount > 0 ? classCount + "节" : "无课";
+                SpannableString text = new SpannableString("第" + week + "周\n" + countText);
+                text.setSpan(new AbsoluteSizeSpan(countTextSize), text.length() - countText.length(),
+                        text.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                button.setText(text);
+    
+                if (week == currentWeek && !showAllWeeks) {
+                    button.setBackgroundResource(R.drawable.tag_button_selected);
+                    button.setTextColor(Color.WHITE);
                 } else {
-                    // 不连续，添加当前范围
-                    if (result.length() > 0) {
-                        result.append("、");
-                    }
-                    if (start == end) {
-                        result.append(start);
-                    } else {
-                        result.append(start).append("-").append(end);
-                    }
-                    
-                    // 开始新的范围
-                    start = weeks.get(i);
-                    end = weeks.get(i);
+                    button.setBackgroundResource(R.drawable.tag_button_normal);
+                    button.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
                 }
+    
+                button.setOnClickListener(v -> {
+                    // 使用新的setCurrentWeek方法
+                    setCurrentWeek(week);
+                    dialog.dismiss();
+                });
+                return view;
             }
-            
-            // 添加最后一个范围
-            if (result.length() > 0) {
-                result.append("、");
-            }
-            if (start == end) {
-                result.append(start);
-            } else {
-                result.append(start).append("-").append(end);
-            }
-            
-            return result.toString();
+        };
+    
+        weekGrid.setAdapter(adapter);
+    
+        btnReturnCurrentWeek.setOnClickListener(v -> {
+            // 获取当前周次并设置
+            int currentWeekNum = CourseDataManager.getCurrentWeek(context);
+            setCurrentWeek(currentWeekNum);
+            dialog.dismiss();
+        });
+    
+        btnAllWeeks.setOnClickListener(v -> {
+            // 使用新的setShowAllWeeks方法
+            setShowAllWeeks(true);
+            dialog.dismiss();
+        });
+
+        btnTermOverview.setOnClickListener(v -> {
+            dialog.dismiss();
+            showTermOverviewDialog(overview);
+        });
+    
+        dialog.show();
+        FrameStats.trackDialog(dialog, "WeekSwitchMenu");
+    }
+
+    /**
+     * 学期总览：整个学期每周每天每大节的课程分布热力图，点击某一行切换到该周
+     */
+    private void showTermOverviewDialog(TermOverview overview) {
+        View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_term_overview, null);
+        TermHeatmapView heatmapView = dialogView.findViewById(R.id.termHeatmap);
+        final AlertDialog dialog = new AlertDialog.Builder(context, R.style.DialogTheme)
+                .setView(dialogView)
+                .create();
+
+        heatmapView.setOverview(overview, CourseDataManager.getCurrentWeek(context));
+        heatmapView.setOnWeekClickListener(week -> {
+            setCurrentWeek(week);
+            dialog.dismiss();
+        });
+
+        dialog.show();
+        FrameStats.trackDialog(dialog, "TermOverview");
+    }
+    
+    // 新增方法：更新全部周次按钮状态
+    private void updateAllWeeksButtonState(Button btnAllWeeks) {
+        if (showAllWeeks) {
+            btnAllWeeks.setBackgroundResource(R.drawable.tag_button_selected);
+            btnAllWeeks.setTextColor(Color.WHITE);
+        } else {
+            btnAllWeeks.setBackgroundResource(R.drawable.tag_button_normal);
+            btnAllWeeks.setTextColor(ContextCompat.getColor(context, R.color.dialog_title_color));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 课程颜色的持久化：课程名 -> 调色板下标，使颜色在重启和刷新课表后保持不变
+ * 每门课程一个条目，只写入新分配颜色的课程
+ */
+public final class CourseColorStore {
+    private static final String PREFS_NAME = "CourseColors";
+
+    private CourseColorStore() {
+    }
+
+    /**
+     * 读取已保存的课程颜色到 colorIndexes
+     */
+    public static void load(Context context, Map<String, Integer> colorIndexes) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Integer) {
+                colorIndexes.put(entry.getKey(), (Integer) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 保存指定课程的颜色
+     * @param courseNames 新分配颜色的课程名，见 {@link CourseColorAssigner#assign}
+     */
+    public static void save(Context context, Map<String, Integer> colorIndexes, List<String> courseNames) {
+        if (courseNames.isEmpty()) {
+            return;
+        }
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (String courseName : courseNames) {
+            editor.putInt(courseName, colorIndexes.get(courseName));
+        }
+        editor.apply();
+    }
+}
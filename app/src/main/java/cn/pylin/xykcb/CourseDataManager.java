@@ -2,106 +2,91 @@ package cn.pylin.xykcb;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Trace;
 import android.text.TextUtils;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.Reader;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.Locale;
 
 public class CourseDataManager {
     private static final String PREFS_NAME = "CourseListInfo";
-    private static final String PREFS_WEEK_DATES = "WeekDates";
     private static final String PREFS_COURSE_LIST = "CourseList";
 
     public static int getCurrentWeek(Context context) {
-        SharedPreferences weekPrefs = context.getSharedPreferences(PREFS_WEEK_DATES, Context.MODE_PRIVATE);
-        SimpleDateFormat sdf = new SimpleDateFormat("M.d", Locale.getDefault());
-        String today = sdf.format(new Date());
-
-        for (String key : weekPrefs.getAll().keySet()) {
-            String dates = weekPrefs.getString(key, "");
-            if (dates != null) {
-                // 按英文逗号分割日期字符串，然后精准匹配
-                String[] dateArray = dates.split(",");
-                for (String date : dateArray) {
-                    if (date.trim().equals(today)) {
-                        try {
-                            return Integer.parseInt(key);
-                        } catch (NumberFormatException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
-        }
-        return 1; // 默认第1周
+        int week = SemesterCalendar.get(context).getWeekOf(LocalDate.now());
+        return week >= 1 ? week : 1; // 学期开始前默认第1周
     }
 
+    /**
+     * 获取已解析的标准课程，数据未变化时直接使用进程内缓存
+     */
     public static List<List<Course>> parseCourseData(Context context) {
-        SharedPreferences sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String courseListJson = sharedPreferences.getString(PREFS_COURSE_LIST, "");
-
-        return parseCourseData(courseListJson);
+        return ScheduleCache.get(context).getStandardCourses();
     }
 
-    public static List<List<Course>> parseCourseData(String jsonString) {
-        List<Course> courseList = new ArrayList<>();
-        if (jsonString == null || jsonString.isEmpty()) {
-            return new ArrayList<>();
+    /**
+     * 启动时优先显示的部分课表：只从二进制快照解码指定周次的课程，并合并自定义课程
+     * 课表已在缓存中或快照不存在时返回 null，由调用方直接加载完整课表
+     */
+    static List<List<Course>> readWeekCourses(Context context, int week) {
+        if (ScheduleCache.peek() != null) {
+            return null;
         }
-
+        Trace.beginSection("xykcb:readWeekCourses");
         try {
-            JSONObject jsonObject = new JSONObject(jsonString);
-            JSONArray dataArray = jsonObject.getJSONArray("data");
+            List<List<Course>> weekCourses = ScheduleSnapshot.readWeek(context, week,
+                    ScheduleRepository.getCourseListStamp(context));
+            if (weekCourses == null) {
+                return null;
+            }
+            return mergeCourses(weekCourses, CustomCourseManager.getCustomCoursesAsCourseList(context));
+        } finally {
+            Trace.endSection();
+        }
+    }
 
-            for (int i = 0; i < dataArray.length(); i++) {
-                JSONObject dataObject = dataArray.getJSONObject(i);
-                JSONArray itemArray = dataObject.getJSONArray("item");
-                JSONArray dateArray = dataObject.getJSONArray("date");
+    /**
+     * 读取课程数据，不经过缓存
+     * 优先从二进制快照恢复；快照不存在（首次升级或刚同步）或不属于当前课程列表时解析 JSON 并生成快照
+     */
+    static List<List<Course>> readCourseData(Context context) {
+        // 先读取标记再读取 JSON：读取期间课程列表被替换时，快照带着旧标记，下次读取时丢弃
+        String stamp = ScheduleRepository.getCourseListStamp(context);
+        List<List<Course>> snapshotCourses = ScheduleSnapshot.read(context, stamp);
+        if (snapshotCourses != null) {
+            return snapshotCourses;
+        }
 
-                for (int j = 0; j < itemArray.length(); j++) {
-                    JSONObject item = itemArray.getJSONObject(j);
-                    JSONObject dateInfo = dateArray.getJSONObject(j % dateArray.length());
+        SharedPreferences sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String courseListJson = sharedPreferences.getString(PREFS_COURSE_LIST, "");
 
-                    Course course = new Course(
-                            dateInfo.getString("xqmc"),
-                            item.getString("classTime"),
-                            item.getString("courseName"),
-                            item.getString("location"),
-                            item.getString("teacherName"),
-                            item.getString("classWeek"),
-                            item.getString("maxClassTime"),
-                            item.optString("classWeekDetails", "")
-                    );
-                    courseList.add(course);
-                }
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
+        List<List<Course>> weeklyCourses = parseCourseData(courseListJson);
+        if (!courseListJson.isEmpty()) {
+            ScheduleSnapshot.write(context, weeklyCourses, stamp);
         }
-
-        return groupByWeekday(courseList);
+        return weeklyCourses;
     }
 
-    private static List<List<Course>> groupByWeekday(List<Course> courses) {
-        List<List<Course>> groupedCourses = new ArrayList<>();
-        for (int i = 0; i < 7; i++) {
-            groupedCourses.add(new ArrayList<>());
+    public static List<List<Course>> parseCourseData(String jsonString) {
+        Trace.beginSection("xykcb:parseCourseData");
+        try {
+            return CurriculumParser.parse(jsonString);
+        } finally {
+            Trace.endSection();
         }
+    }
 
-        for (Course course : courses) {
-            int weekday = course.getWeekday();
-            if (weekday >= 1 && weekday <= 7) {
-                groupedCourses.get(weekday - 1).add(course);
-            }
+    /**
+     * 流式解析 student/curriculum 返回的课程数据，见 {@link CurriculumParser}
+     */
+    public static List<List<Course>> parseCourseData(Reader in) {
+        Trace.beginSection("xykcb:parseCourseData");
+        try {
+            return CurriculumParser.parse(in);
+        } finally {
+            Trace.endSection();
         }
-        return groupedCourses;
     }
 
     public static String processLocation(String location) {
@@ -120,26 +105,20 @@ public class CourseDataManager {
 
     // 新增方法：合并标准课程和自定义课程
     public static List<List<Course>> getMergedCourses(Context context, List<List<Course>> standardCourses) {
-        List<List<Course>> customCourses = CustomCourseManager.getCustomCoursesAsCourseList(context);
-        
-        // 合并课程数据
-        List<List<Course>> mergedCourses = new ArrayList<>();
-        for (int i = 0; i < 7; i++) {
-            List<Course> dayCourses = new ArrayList<>();
-            
-            // 添加标准课程
-            if (i < standardCourses.size()) {
-                dayCourses.addAll(standardCourses.get(i));
-            }
-            
-            // 添加自定义课程
-            if (i < customCourses.size()) {
-                dayCourses.addAll(customCourses.get(i));
+        // 传入的正是缓存中的标准课程时，直接复用缓存的合并结果
+        Trace.beginSection("xykcb:getMergedCourses");
+        try {
+            List<List<Course>> cachedCourses = ScheduleCache.getMergedIfCached(standardCourses);
+            if (cachedCourses != null) {
+                return cachedCourses;
             }
-            
-            mergedCourses.add(dayCourses);
+            return mergeCourses(standardCourses, CustomCourseManager.getCustomCoursesAsCourseList(context));
+        } finally {
+            Trace.endSection();
         }
-        
-        return mergedCourses;
     }
-}
\ No newline at end of file
+
+    static List<List<Course>> mergeCourses(List<List<Course>> standardCourses, List<List<Course>> customCourses) {
+        return ScheduleMerger.merge(standardCourses, customCourses);
+    }
+}
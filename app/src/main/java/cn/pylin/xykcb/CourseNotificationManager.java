@@ -162,27 +162,11 @@ public class CourseNotificationManager {
         // 获取当前周次
         int currentWeek = CourseDataManager.getCurrentWeek(context);
         
-        // 获取标准课程数据
-        List<List<Course>> standardCourses = CourseDataManager.parseCourseData(context);
-        // 合并标准课程和自定义课程
-        List<List<Course>> weeklyCourses = CourseDataManager.getMergedCourses(context, standardCourses);
-        
-        // 获取明天的课程列表
-        if (tomorrowDay >= 1 && tomorrowDay <= weeklyCourses.size()) {
-            List<Course> dayCourses = weeklyCourses.get(tomorrowDay - 1);
-            
-            // 过滤出当前周的课程
-            List<Course> result = new java.util.ArrayList<>();
-            for (Course course : dayCourses) {
-                if (course.isInWeek(currentWeek)) {
-                    result.add(course);
-                }
-            }
-            
-            return result;
-        }
+        // 获取合并了自定义课程的课表索引，数据未变化时直接命中缓存
+        ScheduleIndex scheduleIndex = ScheduleCache.get(context).getIndex();
         
-        return new java.util.ArrayList<>();
+        // 获取明天在当前周的课程列表
+        return new java.util.ArrayList<>(scheduleIndex.getCoursesOfDay(currentWeek, tomorrowDay));
     }
     
     /**
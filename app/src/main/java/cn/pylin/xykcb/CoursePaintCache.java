@@ -0,0 +1,32 @@
+package cn.pylin.xykcb;
+
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+/**
+ * 课程格子背景、角标等纯色填充画笔的共享缓存，按颜色复用，避免每次绑定或绘制时重新创建
+ * 只在主线程使用；取得的画笔由多个 View 共享，调用方不能修改其属性
+ */
+final class CoursePaintCache {
+    /** 重叠角标的阴影颜色，半透明黑色 */
+    static final int BADGE_SHADOW_COLOR = 0x40000000;
+
+    private static final SparseArray<Paint> fillPaints = new SparseArray<>();
+
+    private CoursePaintCache() {
+    }
+
+    /**
+     * 获取指定颜色的抗锯齿填充画笔
+     */
+    static Paint getFillPaint(int color) {
+        Paint paint = fillPaints.get(color);
+        if (paint == null) {
+            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.FILL);
+            paint.setColor(color);
+            fillPaints.put(color, paint);
+        }
+        return paint;
+    }
+}
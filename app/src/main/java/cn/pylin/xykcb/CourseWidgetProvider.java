@@ -29,8 +29,12 @@ public class CourseWidgetProvider extends AppWidgetProvider {
     private static long lastClickTime = 0;
     private static int clickCount = 0;
 
+    // 进程内只订阅一次课表变化
+    private static ScheduleCache.Listener scheduleListener;
+
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        observeSchedule(context);
         // 在小组件更新时检查是否需要发送通知
         CourseNotificationManager.checkAndSendNotification(context);
         
@@ -39,6 +43,29 @@ public class CourseWidgetProvider extends AppWidgetProvider {
         }
     }
 
+    /**
+     * 订阅课表变化：课表或自定义课程发布新快照后直接刷新小组件，列表数据从内存中的快照读取
+     */
+    static void observeSchedule(Context context) {
+        if (scheduleListener != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        scheduleListener = snapshot -> {
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(appContext);
+            ComponentName thisAppWidget = new ComponentName(appContext.getPackageName(), CourseWidgetProvider.class.getName());
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(thisAppWidget);
+            if (appWidgetIds.length == 0) {
+                return;
+            }
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list);
+            for (int appWidgetId : appWidgetIds) {
+                updateAppWidget(appContext, appWidgetManager, appWidgetId);
+            }
+        };
+        ScheduleCache.addListener(scheduleListener);
+    }
+
     static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_course_layout);
 
@@ -122,9 +149,10 @@ public class CourseWidgetProvider extends AppWidgetProvider {
         } else if (ACTION_NEXT_DAY.equals(intent.getAction())) {
             // 实现周日点击下一天到下一周周一
             if (currentDay == 7) { // 周日
-                // 检查是否已经是第24周，不允许切换到第25周
+                // 检查是否已经是学期最后一周，学期周数与课表翻页一致取自课表索引
                 int currentWeek = CourseDataManager.getCurrentWeek(context);
-                if (currentWeek + currentWeekOffset < 24) {
+                int weekCount = ScheduleCache.get(context).getIndex().getMaxWeek();
+                if (currentWeek + currentWeekOffset < weekCount) {
                     currentWeekOffset++;
                     currentDay = 1; // 切换到下一周周一
                 }
@@ -18,53 +18,41 @@ class CourseRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     private final Context context;
     private final int appWidgetId;
     private final int weekOffset;
-    private List<List<Course>> weeklyCourses;
+    private ScheduleIndex scheduleIndex;
     private int currentWeek;
 
     public CourseRemoteViewsFactory(Context context, Intent intent) {
         this.context = context;
         this.appWidgetId = intent.getIntExtra("appWidgetId", 0);
         this.weekOffset = intent.getIntExtra("weekOffset", 0);
-        this.currentWeek = CourseDataManager.getCurrentWeek(context) + weekOffset;
-        // 获取标准课程数据
-        List<List<Course>> standardCourses = CourseDataManager.parseCourseData(context);
-        // 合并标准课程和自定义课程
-        this.weeklyCourses = CourseDataManager.getMergedCourses(context, standardCourses);
     }
 
     @Override
     public void onCreate() {
         // 更新数据源
         this.currentWeek = CourseDataManager.getCurrentWeek(context) + weekOffset;
-        // 获取标准课程数据
-        List<List<Course>> standardCourses = CourseDataManager.parseCourseData(context);
-        // 合并标准课程和自定义课程
-        this.weeklyCourses = CourseDataManager.getMergedCourses(context, standardCourses);
+        // 获取合并了自定义课程的课表索引，数据未变化时直接命中缓存
+        this.scheduleIndex = ScheduleCache.get(context).getIndex();
     }
 
     @Override
     public void onDataSetChanged() {
         // 更新数据源
         this.currentWeek = CourseDataManager.getCurrentWeek(context) + weekOffset;
-        // 获取标准课程数据
-        List<List<Course>> standardCourses = CourseDataManager.parseCourseData(context);
-        // 合并标准课程和自定义课程
-        this.weeklyCourses = CourseDataManager.getMergedCourses(context, standardCourses);
-        
-        // 从SharedPreferences获取最新的weekOffset
-        android.content.SharedPreferences prefs = context.getSharedPreferences("CourseWidgetPrefs", Context.MODE_PRIVATE);
-        int savedWeekOffset = prefs.getInt("currentWeekOffset", 0);
+        // 获取合并了自定义课程的课表索引，课表发布后直接使用内存中的快照
+        this.scheduleIndex = ScheduleCache.get(context).getIndex();
         
-        // 如果保存的weekOffset与当前weekOffset不同，更新currentWeek
-        if (savedWeekOffset != weekOffset) {
-            this.currentWeek = CourseDataManager.getCurrentWeek(context) + savedWeekOffset;
+        // 小组件与应用在同一进程，直接使用内存中最新的weekOffset
+        int latestWeekOffset = CourseWidgetProvider.currentWeekOffset;
+        if (latestWeekOffset != weekOffset) {
+            this.currentWeek = CourseDataManager.getCurrentWeek(context) + latestWeekOffset;
         }
     }
 
     @Override
     public void onDestroy() {
         // 清理资源
-        weeklyCourses = null;
+        scheduleIndex = null;
     }
 
     @Override
@@ -88,23 +76,17 @@ class CourseRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         views.setTextViewText(R.id.widget_course_teacher, "");
 
         try {
-            // 确保day在有效范围内
-            if (day >= 0 && day < weeklyCourses.size()) {
-                // 遍历当天的课程，找到匹配的课程信息
-                for (Course course : weeklyCourses.get(day)) {
-                    // 检查课程是否在当前显示的周和时间段内
-                    if (course.isInWeek(currentWeek) && course.isInTimeSlot(day + 1, timeSlot)) {
-                        String courseName = course.getCourseName();
-                        String location = CourseDataManager.processLocation(course.getLocation());
-                        String teacher = course.getTeacher();
-
-                        views.setTextViewText(R.id.widget_course_name, courseName);
-                        views.setTextViewText(R.id.widget_course_location, location);
-                        views.setTextViewText(R.id.widget_course_teacher, teacher);
-
-                        break;
-                    }
-                }
+            // 直接从索引取出当前周该格子的课程
+            List<Course> courses = scheduleIndex.getCourses(currentWeek, day + 1, timeSlot);
+            if (!courses.isEmpty()) {
+                Course course = courses.get(0);
+                String courseName = course.getCourseName();
+                String location = CourseDataManager.processLocation(course.getLocation());
+                String teacher = course.getTeacher();
+
+                views.setTextViewText(R.id.widget_course_name, courseName);
+                views.setTextViewText(R.id.widget_course_location, location);
+                views.setTextViewText(R.id.widget_course_teacher, teacher);
             }
         } catch (Exception e) {
             e.printStackTrace();
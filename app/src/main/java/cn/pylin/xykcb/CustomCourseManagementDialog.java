@@ -2,7 +2,6 @@ package cn.pylin.xykcb;
 
 import android.app.AlertDialog;
 import android.content.Context;
-import android.content.Intent;
 import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -150,43 +149,14 @@ public class CustomCourseManagementDialog {
         course.setTimeSlots(selectedTimes);
         
         // 设置周次范围
-        List<Integer> weekList = new ArrayList<>();
+        List<Integer> weekList;
         if (!weeks.isEmpty()) {
             // 解析周次范围，例如"1,3,5-8,10,12-15"
-            String[] parts = weeks.split(",");
-            for (String part : parts) {
-                part = part.trim();
-                if (part.contains("-")) {
-                    // 范围格式，如"5-8"
-                    String[] range = part.split("-");
-                    if (range.length == 2) {
-                        try {
-                            int startWeek = Integer.parseInt(range[0].trim());
-                            int endWeek = Integer.parseInt(range[1].trim());
-                            for (int week = startWeek; week <= endWeek; week++) {
-                                weekList.add(week);
-                            }
-                        } catch (NumberFormatException e) {
-                            // 如果解析失败，使用默认周次
-                            for (int week = 1; week <= 16; week++) {
-                                weekList.add(week);
-                            }
-                        }
-                    }
-                } else {
-                    // 单个周次，如"1"或"3"
-                    try {
-                        int week = Integer.parseInt(part);
-                        weekList.add(week);
-                    } catch (NumberFormatException e) {
-                        // 忽略无效的周次
-                    }
-                }
-            }
+            weekList = WeekRanges.parse(weeks);
         } else {
             // 如果没有指定周次，默认显示当前周次
-            int currentWeek = CourseDataManager.getCurrentWeek(context);
-            weekList.add(currentWeek);
+            weekList = new ArrayList<>();
+            weekList.add(CourseDataManager.getCurrentWeek(context));
         }
         course.setWeeks(weekList);
         
@@ -370,13 +340,6 @@ public class CustomCourseManagementDialog {
             if (success) {
                 CustomToast.showShortToast(context, isAddMode ? "课程添加成功" : "课程更新成功");
                 editDialog.dismiss();
-                // 发送广播通知课程表刷新
-                if (context instanceof MainActivity) {
-                    Intent intent = new Intent("CUSTOM_COURSE_UPDATED");
-                    // 为Android 15+添加包名信息，确保广播能被正确接收
-                    intent.setPackage(context.getPackageName());
-                    context.sendBroadcast(intent);
-                }
                 // 刷新课程列表
                 refreshCustomCoursesList();
             } else {
@@ -406,57 +369,20 @@ public class CustomCourseManagementDialog {
         course.setTimeSlots(selectedTimes); // 设置多选时间段
         
         // 设置周次范围
-        List<Integer> weekList = new ArrayList<>();
+        List<Integer> weekList;
         if (!weeks.isEmpty()) {
             // 解析周次范围，例如"1,3,5-8,10,12-15"
-            String[] parts = weeks.split(",");
-            for (String part : parts) {
-                part = part.trim();
-                if (part.contains("-")) {
-                    // 范围格式，如"5-8"
-                    String[] range = part.split("-");
-                    if (range.length == 2) {
-                        try {
-                            int startWeek = Integer.parseInt(range[0].trim());
-                            int endWeek = Integer.parseInt(range[1].trim());
-                            for (int week = startWeek; week <= endWeek; week++) {
-                                weekList.add(week);
-                            }
-                        } catch (NumberFormatException e) {
-                            // 如果解析失败，使用默认周次
-                            for (int week = 1; week <= 16; week++) {
-                                weekList.add(week);
-                            }
-                        }
-                    }
-                } else {
-                    // 单个周次，如"1"或"3"
-                    try {
-                        int week = Integer.parseInt(part);
-                        weekList.add(week);
-                    } catch (NumberFormatException e) {
-                        // 忽略无效的周次
-                    }
-                }
-            }
+            weekList = WeekRanges.parse(weeks);
         } else {
             // 如果没有指定周次，默认显示当前周次
-            int currentWeek = CourseDataManager.getCurrentWeek(context);
-            weekList.add(currentWeek);
+            weekList = new ArrayList<>();
+            weekList.add(CourseDataManager.getCurrentWeek(context));
         }
         course.setWeeks(weekList);
         
         // 使用CustomCourseManager更新课程
         boolean success = customCourseManager.updateCustomCourse(index, course);
         
-        if (success) {
-            // 发送广播通知课程表刷新
-            Intent intent = new Intent("CUSTOM_COURSE_UPDATED");
-            // 为Android 15+添加包名信息，确保广播能被正确接收
-            intent.setPackage(context.getPackageName());
-            context.sendBroadcast(intent);
-        }
-        
         return success;
     }
     
@@ -492,13 +418,6 @@ public class CustomCourseManagementDialog {
             boolean success = customCourseManager.deleteCustomCourse(index);
             if (success) {
                 CustomToast.showShortToast(context, "课程删除成功");
-                // 发送广播通知课程表刷新
-                if (context instanceof MainActivity) {
-                    Intent intent = new Intent("CUSTOM_COURSE_UPDATED");
-                    // 为Android 15+添加包名信息，确保广播能被正确接收
-                    intent.setPackage(context.getPackageName());
-                    context.sendBroadcast(intent);
-                }
                 // 刷新课程列表
                 refreshCustomCoursesList();
             } else {
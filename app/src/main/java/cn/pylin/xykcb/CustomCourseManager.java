@@ -72,27 +72,7 @@ public class CustomCourseManager {
      * 将自定义课程转换为标准课程列表格式
      */
     public static List<List<Course>> getCustomCoursesAsCourseList(Context context) {
-        List<CustomCourse> customCourses = getCustomCourses(context);
-        List<List<Course>> result = new ArrayList<>();
-        
-        // 初始化7天的课程列表
-        for (int i = 0; i < 7; i++) {
-            result.add(new ArrayList<>());
-        }
-        
-        // 将自定义课程转换为标准课程并分组
-        for (CustomCourse customCourse : customCourses) {
-            // 对于多选星期的课程，为每个选中的星期创建单独的课程副本
-            for (int weekday : customCourse.getWeekdays()) {
-                if (weekday >= 1 && weekday <= 7) {
-                    // 为每个星期创建单独的课程对象，classTime只包含对应的星期数字
-                    Course course = customCourse.toCourseForWeekday(weekday);
-                    result.get(weekday - 1).add(course);
-                }
-            }
-        }
-        
-        return result;
+        return ScheduleMerger.toWeeklyCourses(getCustomCourses(context));
     }
 
     // 获取自定义课程列表
@@ -117,7 +97,11 @@ public class CustomCourseManager {
             editor.putString(KEY_COURSES, coursesArray.toString());
             editor.putInt(KEY_NEXT_ID, nextCourseId);
             
-            return editor.commit();
+            boolean saved = editor.commit();
+            if (saved) {
+                ScheduleCache.publishCustomCourses(context);
+            }
+            return saved;
         } catch (Exception e) {
             Log.e(TAG, "保存自定义课程失败", e);
             return false;
@@ -0,0 +1,275 @@
+package cn.pylin.xykcb;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.Window;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 帧耗时统计：在窗口可见期间通过 FrameMetrics 收集每一帧的总耗时，按界面保存在内存环形缓冲区中
+ * 可计算 p50/p95/p99 和慢帧数，供隐藏的诊断面板查看或导出为 JSON
+ */
+public final class FrameStats {
+    private static final String TAG = "FrameStats";
+    // 每个界面保留最近的帧数
+    private static final int RING_CAPACITY = 600;
+    // 超过该耗时的帧视为冻结帧
+    private static final long FROZEN_FRAME_NANOS = 700_000_000L;
+    private static final long DEFAULT_FRAME_BUDGET_NANOS = 16_666_667L;
+
+    private static final Map<String, ScreenStats> screens = new LinkedHashMap<>();
+    private static Handler metricsHandler;
+
+    /**
+     * 一个界面的帧耗时环形缓冲区和累计计数
+     */
+    private static final class ScreenStats {
+        final long[] durations = new long[RING_CAPACITY];
+        int next;
+        int size;
+        long totalFrames;
+        long slowFrames;
+        long frozenFrames;
+        long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+        void add(long durationNanos) {
+            durations[next] = durationNanos;
+            next = (next + 1) % RING_CAPACITY;
+            if (size < RING_CAPACITY) {
+                size++;
+            }
+            totalFrames++;
+            if (durationNanos > frameBudgetNanos) {
+                slowFrames++;
+            }
+            if (durationNanos > FROZEN_FRAME_NANOS) {
+                frozenFrames++;
+            }
+        }
+
+        void reset() {
+            next = 0;
+            size = 0;
+            totalFrames = 0;
+            slowFrames = 0;
+            frozenFrames = 0;
+        }
+
+        long[] sortedDurations() {
+            long[] sorted = Arrays.copyOf(durations, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * 已开始收集的窗口，用于停止收集
+     */
+    public static final class Tracker {
+        private final Window window;
+        private final Window.OnFrameMetricsAvailableListener listener;
+        private boolean stopped;
+
+        private Tracker(Window window, Window.OnFrameMetricsAvailableListener listener) {
+            this.window = window;
+            this.listener = listener;
+        }
+
+        public void stop() {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            try {
+                window.removeOnFrameMetricsAvailableListener(listener);
+            } catch (IllegalArgumentException e) {
+                // 窗口已销毁时监听器已被移除
+            }
+        }
+    }
+
+    private FrameStats() {
+    }
+
+    /**
+     * 开始收集窗口的帧耗时，调用方在窗口不可见时调用 {@link Tracker#stop()}
+     * @param screen 界面名称，同名界面的数据合并统计
+     */
+    public static Tracker track(Window window, String screen) {
+        ScreenStats stats = getOrCreate(screen);
+        float refreshRate = window.getContext().getDisplay().getRefreshRate();
+        if (refreshRate > 0) {
+            synchronized (FrameStats.class) {
+                stats.frameBudgetNanos = (long) (1_000_000_000L / refreshRate);
+            }
+        }
+        Window.OnFrameMetricsAvailableListener listener = (w, frameMetrics, dropCount) -> {
+            // 窗口的第一帧包含布局和初始化，不计入统计
+            if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) != 0) {
+                return;
+            }
+            long duration = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            synchronized (FrameStats.class) {
+                stats.add(duration);
+            }
+        };
+        window.addOnFrameMetricsAvailableListener(listener, getMetricsHandler());
+        return new Tracker(window, listener);
+    }
+
+    /**
+     * 收集弹窗的帧耗时，需在 show() 之后调用，弹窗关闭时自动停止
+     */
+    public static void trackDialog(Dialog dialog, String screen) {
+        Window window = dialog.getWindow();
+        if (window == null) {
+            return;
+        }
+        Tracker tracker = track(window, screen);
+        window.getDecorView().addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                v.removeOnAttachStateChangeListener(this);
+                tracker.stop();
+            }
+        });
+    }
+
+    /**
+     * 各界面的统计摘要，用于诊断面板显示
+     */
+    public static synchronized String summary() {
+        if (screens.isEmpty()) {
+            return "暂无帧数据";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, ScreenStats> entry : screens.entrySet()) {
+            ScreenStats stats = entry.getValue();
+            long[] sorted = stats.sortedDurations();
+            builder.append(entry.getKey()).append('\n')
+                    .append(String.format(Locale.ROOT, "帧数 %d  慢帧 %d  冻结帧 %d\n",
+                            stats.totalFrames, stats.slowFrames, stats.frozenFrames))
+                    .append(String.format(Locale.ROOT, "p50 %.1fms  p95 %.1fms  p99 %.1fms\n\n",
+                            toMillis(percentile(sorted, 50)), toMillis(percentile(sorted, 95)),
+                            toMillis(percentile(sorted, 99))));
+        }
+        return builder.toString().trim();
+    }
+
+    /**
+     * 清空已收集的数据，正在收集的窗口继续记录
+     */
+    public static synchronized void clear() {
+        for (ScreenStats stats : screens.values()) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * 导出统计数据和缓冲区中的帧耗时为 JSON 文件，保存在应用专属外部存储目录
+     * @return 导出的文件，失败时为 null
+     */
+    public static File exportJson(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        File file = new File(dir, "frame_stats_" + System.currentTimeMillis() + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson().toString(2));
+            return file;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "导出帧数据失败", e);
+            return null;
+        }
+    }
+
+    private static synchronized JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        root.put("exportedAt", System.currentTimeMillis());
+        root.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        root.put("sdkInt", Build.VERSION.SDK_INT);
+
+        JSONArray screenArray = new JSONArray();
+        for (Map.Entry<String, ScreenStats> entry : screens.entrySet()) {
+            ScreenStats stats = entry.getValue();
+            long[] sorted = stats.sortedDurations();
+            JSONObject screen = new JSONObject();
+            screen.put("screen", entry.getKey());
+            screen.put("totalFrames", stats.totalFrames);
+            screen.put("slowFrames", stats.slowFrames);
+            screen.put("frozenFrames", stats.frozenFrames);
+            screen.put("frameBudgetMs", toMillis(stats.frameBudgetNanos));
+            screen.put("p50Ms", toMillis(percentile(sorted, 50)));
+            screen.put("p95Ms", toMillis(percentile(sorted, 95)));
+            screen.put("p99Ms", toMillis(percentile(sorted, 99)));
+
+            // 按时间顺序输出缓冲区中的帧耗时
+            JSONArray frames = new JSONArray();
+            int start = (stats.next - stats.size + RING_CAPACITY) % RING_CAPACITY;
+            for (int i = 0; i < stats.size; i++) {
+                frames.put(toMillis(stats.durations[(start + i) % RING_CAPACITY]));
+            }
+            screen.put("recentFrameMs", frames);
+            screenArray.put(screen);
+        }
+        root.put("screens", screenArray);
+        return root;
+    }
+
+    private static synchronized ScreenStats getOrCreate(String screen) {
+        ScreenStats stats = screens.get(screen);
+        if (stats == null) {
+            stats = new ScreenStats();
+            screens.put(screen, stats);
+        }
+        return stats;
+    }
+
+    // 帧数据回调在单独的线程处理，不占用主线程
+    private static synchronized Handler getMetricsHandler() {
+        if (metricsHandler == null) {
+            HandlerThread thread = new HandlerThread("FrameStats");
+            thread.start();
+            metricsHandler = new Handler(thread.getLooper());
+        }
+        return metricsHandler;
+    }
+
+    // 最近排名法计算百分位
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,134 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 最近一次显示的当前周课表格子的缓存
+ * 课表稳定显示后保存每个格子的文本、颜色、角标和标题行日期，下次启动时在解析任何课程数据之前直接绘制，
+ * 实时数据到达后再替换（外观相同的格子不会重绘）
+ *
+ * 文件格式：魔数、格式版本、周次、是否横屏、7个标题、35个格子（文本、颜色下标、课程数）
+ */
+final class GridSnapshot {
+    private static final String TAG = "GridSnapshot";
+    private static final String FILE_NAME = "grid_snapshot.bin";
+    private static final int MAGIC = 0x58434752; // "XCGR"
+    private static final int FORMAT_VERSION = 1;
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+
+    // 写入在后台线程依次执行，不阻塞界面
+    private static final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private final WeekRenderModel model;
+    private final String[] dayHeaders;
+
+    private GridSnapshot(WeekRenderModel model, String[] dayHeaders) {
+        this.model = model;
+        this.dayHeaders = dayHeaders;
+    }
+
+    WeekRenderModel getModel() {
+        return model;
+    }
+
+    String[] getDayHeaders() {
+        return dayHeaders;
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * 读取缓存的格子，文件不存在或损坏时返回 null
+     */
+    static GridSnapshot read(Context context) {
+        File file = getFile(context);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("格子缓存格式不匹配");
+            }
+            int week = in.readInt();
+            boolean landscape = in.readBoolean();
+            String[] dayHeaders = new String[DAYS];
+            for (int i = 0; i < DAYS; i++) {
+                dayHeaders[i] = in.readUTF();
+            }
+            CellRenderModel[] cells = new CellRenderModel[DAYS * SLOTS];
+            for (int i = 0; i < cells.length; i++) {
+                String text = in.readUTF();
+                int colorIndex = in.readInt();
+                int overlapCount = in.readInt();
+                cells[i] = CellRenderModel.ofAppearance(text, colorIndex, overlapCount);
+            }
+            return new GridSnapshot(WeekRenderModel.of(week, landscape, cells), dayHeaders);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "读取格子缓存失败，已丢弃", e);
+        }
+        file.delete();
+        return null;
+    }
+
+    /**
+     * 在后台保存一周的格子，先写临时文件再重命名覆盖
+     * @param dayHeaders 标题行的7个星期和日期
+     */
+    static void write(Context context, WeekRenderModel model, String[] dayHeaders) {
+        Context appContext = context.getApplicationContext();
+        String[] headers = dayHeaders.clone();
+        writeExecutor.execute(() -> {
+            File file = getFile(appContext);
+            File tempFile = new File(file.getPath() + ".tmp");
+            try {
+                byte[] data = encode(model, headers);
+                try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                    out.write(data);
+                }
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("重命名格子缓存失败");
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "保存格子缓存失败", e);
+                tempFile.delete();
+            }
+        });
+    }
+
+    private static byte[] encode(WeekRenderModel model, String[] dayHeaders) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(model.getWeek());
+        out.writeBoolean(model.isLandscape());
+        for (int i = 0; i < DAYS; i++) {
+            out.writeUTF(dayHeaders[i]);
+        }
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            for (int day = 1; day <= DAYS; day++) {
+                CellRenderModel cell = model.getCell(day, slot);
+                out.writeUTF(cell.getText());
+                out.writeInt(cell.getColorIndex());
+                out.writeInt(cell.getOverlapCount());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,570 @@
+package cn.pylin.xykcb;
+
+import android.os.Trace;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 湖南工学院外网登录的请求依赖图，每个接口是一个 CompletableFuture 阶段，依赖完成后立即发起：
+ * <pre>
+ * 会话 ─┬─ 学年学期 ──┬─ 课程列表
+ *       ├─ 节次模式 ──┘
+ *       └─ 当前周次
+ * </pre>
+ * 有保存的会话时先用保存的 token 请求当前周次，同时验证 token，被拒绝后才重新登录，见 {@link HnitSession}。
+ * 会话之后的三个接口只依赖 token，同时发起；同一地址在一次登录中只请求一次。
+ * 学年学期和节次模式使用 {@link NjwhdResponseCache} 缓存：有缓存时课程列表直接用缓存的 ID 请求，
+ * 过期的缓存同时重新验证，ID 变化后立即按新 ID 请求课程列表，并取消按旧 ID 发起的请求。
+ * 阶段失败时依赖它的阶段以同一异常结束，{@link #cancel()} 取消所有进行中的请求。
+ * 各阶段耗时和登录到显示的总耗时写入日志，最近一次的结果可在诊断面板查看。
+ * 教务系统地址、OkHttpClient 和本地存储 {@link Store} 由调用方传入，不直接访问 SharedPreferences。
+ */
+final class HnitLoginPipeline {
+    private static final String TAG = "HnitLoginPipeline";
+    private static final AtomicInteger traceCookies = new AtomicInteger();
+    private static volatile String lastTimingSummary = "暂无登录耗时数据";
+
+    /**
+     * 阶段失败，message 是显示给用户的提示
+     */
+    static final class StageException extends Exception {
+        // 服务器返回的错误码，请求未完成或解析失败时为 0
+        final int httpCode;
+
+        StageException(String message) {
+            this(message, 0);
+        }
+
+        StageException(String message, int httpCode) {
+            super(message);
+            this.httpCode = httpCode;
+        }
+    }
+
+    /**
+     * 登录接口返回的 token 和用户信息，缺少的字段为空字符串
+     */
+    static final class LoginResult {
+        final String token;
+        final String userName;
+        final String academyName;
+        final String className;
+
+        LoginResult(String token, String userName, String academyName, String className) {
+            this.token = token;
+            this.userName = userName;
+            this.academyName = academyName;
+            this.className = className;
+        }
+    }
+
+    /**
+     * 登录流程读写的本地数据：保存的会话和元数据接口的响应缓存
+     * 应用中由 {@link PreferencesLoginStore} 保存到 SharedPreferences
+     */
+    interface Store {
+        /**
+         * 重新登录并保存新的会话，同一账号已有登录请求进行中时共用它的结果
+         * @param login 发起登录请求，只在没有进行中的请求时调用
+         */
+        CompletableFuture<LoginResult> refreshSession(String username,
+                Supplier<CompletableFuture<LoginResult>> login);
+
+        /**
+         * 服务器拒绝保存的 token 后调用
+         */
+        void invalidateSession(String token);
+
+        /**
+         * 读取缓存的响应，没有时返回 null
+         */
+        NjwhdResponseCache.Entry getCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account);
+
+        /**
+         * 保存可以解析的新响应，验证头不存在时为 null
+         */
+        void putCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account, String body,
+                String etag, String lastModified);
+
+        /**
+         * 服务器返回 304，缓存重新开始计算有效期
+         */
+        void touchCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account);
+    }
+
+    private final Store store;
+    private final OkHttpClient client;
+    private final String baseUrl;
+    private final long startNanos = System.nanoTime();
+    // 同一地址的请求结果，后来的调用方直接共用
+    private final Map<String, CompletableFuture<String>> requests = new ConcurrentHashMap<>();
+    private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean cancelled;
+
+    private CompletableFuture<LoginResult> login;
+    private CompletableFuture<Integer> teachingWeek;
+    private CompletableFuture<String> curriculum;
+
+    /**
+     * 一次请求的结果，验证头不存在时为 null
+     */
+    private static final class Reply {
+        final int code;
+        final String body;
+        final String etag;
+        final String lastModified;
+
+        Reply(int code, String body, String etag, String lastModified) {
+            this.code = code;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 元数据接口的两个结果：initial 是缓存或第一次请求得到的值，用于尽早请求课程列表；
+     * latest 是重新验证后的值，缓存仍在有效期内或重新验证失败时与 initial 相同
+     */
+    private static final class Metadata {
+        final CompletableFuture<String> initial;
+        final CompletableFuture<String> latest;
+
+        Metadata(CompletableFuture<String> initial, CompletableFuture<String> latest) {
+            this.initial = initial;
+            this.latest = latest;
+        }
+    }
+
+    /**
+     * @param baseUrl 教务系统地址，以 / 结尾
+     */
+    HnitLoginPipeline(Store store, OkHttpClient client, String baseUrl) {
+        this.store = store;
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * 建立依赖图并发起第一个请求
+     * @param encryptedPassword 加密密码，只在需要重新登录时调用
+     * @param savedSession 保存的会话，没有时为 null
+     */
+    void start(String username, Supplier<String> encryptedPassword, LoginResult savedSession) {
+        if (savedSession != null) {
+            // 当前周次接口开销最小且本来就要请求，同时用来验证 token；验证通过后下面直接复用这次的结果
+            login = post("获取当前周次", "njwhd/teachingWeek?token=" + savedSession.token)
+                    .handle(HnitLoginPipeline::isTokenAccepted)
+                    .thenCompose(accepted -> {
+                        if (accepted) {
+                            return CompletableFuture.completedFuture(savedSession);
+                        }
+                        Log.i(TAG, "保存的 token 已失效，重新登录");
+                        store.invalidateSession(savedSession.token);
+                        return refreshSession(username, encryptedPassword);
+                    });
+        } else {
+            login = refreshSession(username, encryptedPassword);
+        }
+        CompletableFuture<String> token = login.thenApply(result -> result.token);
+
+        Metadata xnxq01id = fetchMetadata("获取学年学期", NjwhdResponseCache.Endpoint.XNXQ_LIST,
+                username, token, HnitLoginPipeline::parseXnxq01id);
+        Metadata kbjcmsid = fetchMetadata("获取课程节次模式", NjwhdResponseCache.Endpoint.SJKBMS,
+                username, token, HnitLoginPipeline::parseKbjcmsid);
+        teachingWeek = token
+                .thenCompose(t -> post("获取当前周次", "njwhd/teachingWeek?token=" + t))
+                .thenApply(HnitLoginPipeline::parseNowWeek);
+
+        // 先按最早得到的 token 和 ID 请求课程列表：有保存的会话时不等 token 验证完成，与当前周次同时请求；
+        // 验证后的 token 或重新验证后的 ID 相同时直接复用这次请求，不同时按新值请求并取消这次请求
+        CompletableFuture<String> earliestToken = savedSession != null
+                ? CompletableFuture.completedFuture(savedSession.token) : token;
+        CompletableFuture<String> firstPath = earliestToken
+                .thenCompose(t -> xnxq01id.initial.thenCombine(kbjcmsid.initial,
+                        (xnxq, kbjc) -> curriculumPath(t, xnxq, kbjc)));
+        firstPath.thenAccept(path -> post("获取课程列表", path));
+        curriculum = token
+                .thenCompose(t -> xnxq01id.latest.thenCombine(kbjcmsid.latest,
+                        (xnxq, kbjc) -> curriculumPath(t, xnxq, kbjc)))
+                .thenCompose(path -> {
+                    firstPath.thenAccept(initialPath -> {
+                        if (!initialPath.equals(path)) {
+                            cancelRequest(initialPath);
+                        }
+                    });
+                    return post("获取课程列表", path);
+                });
+    }
+
+    private static String curriculumPath(String token, String xnxq01id, String kbjcmsid) {
+        return "njwhd/student/curriculum?token=" + token + "&xnxq01id=" + xnxq01id
+                + "&kbjcmsid=" + kbjcmsid + "&week=all";
+    }
+
+    /**
+     * 通过缓存获取元数据接口的值：有效期内不发请求；过期时先返回缓存的值，同时带验证头重新请求；
+     * 没有缓存时等待请求结果。解析成功的响应才写入缓存
+     */
+    private Metadata fetchMetadata(String stage, NjwhdResponseCache.Endpoint endpoint, String account,
+            CompletableFuture<String> token, Function<String, String> parser) {
+        NjwhdResponseCache.Entry cached = store.getCachedResponse(endpoint, account);
+        String cachedValue = null;
+        if (cached != null) {
+            try {
+                cachedValue = parser.apply(cached.body);
+            } catch (CompletionException e) {
+                // 缓存内容无法解析时当作没有缓存
+                cached = null;
+            }
+        }
+        if (cached != null && cached.isFresh(endpoint)) {
+            CompletableFuture<String> value = CompletableFuture.completedFuture(cachedValue);
+            return new Metadata(value, value);
+        }
+
+        NjwhdResponseCache.Entry validated = cached;
+        CompletableFuture<String> revalidated = token
+                .thenCompose(t -> execute(stage, conditionalRequest(endpoint, t, validated), true))
+                .thenApply(reply -> {
+                    if (reply.code == 304 && validated != null) {
+                        store.touchCachedResponse(endpoint, account);
+                        return parser.apply(validated.body);
+                    }
+                    String value = parser.apply(reply.body);
+                    store.putCachedResponse(endpoint, account, reply.body, reply.etag, reply.lastModified);
+                    return value;
+                });
+        if (cached == null) {
+            return new Metadata(revalidated, revalidated);
+        }
+        String fallback = cachedValue;
+        CompletableFuture<String> latest = revalidated.exceptionally(error -> {
+            if (isCancelled()) {
+                throw new CompletionException(error);
+            }
+            // 重新验证失败时继续使用缓存
+            Log.w(TAG, stage + "重新验证失败，使用缓存：" + unwrap(error).getMessage());
+            return fallback;
+        });
+        return new Metadata(CompletableFuture.completedFuture(cachedValue), latest);
+    }
+
+    private Request conditionalRequest(NjwhdResponseCache.Endpoint endpoint, String token,
+            NjwhdResponseCache.Entry cached) {
+        Request.Builder builder = newPost(baseUrl + "njwhd/" + endpoint.path + "?token=" + token);
+        if (cached != null) {
+            if (!cached.etag.isEmpty()) {
+                builder.header("If-None-Match", cached.etag);
+            }
+            if (!cached.lastModified.isEmpty()) {
+                builder.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+        return builder.build();
+    }
+
+    CompletableFuture<LoginResult> getLogin() {
+        return login;
+    }
+
+    /**
+     * 教务系统返回的当前周次
+     */
+    CompletableFuture<Integer> getTeachingWeek() {
+        return teachingWeek;
+    }
+
+    /**
+     * 整个学期的课程列表原始 JSON
+     */
+    CompletableFuture<String> getCurriculum() {
+        return curriculum;
+    }
+
+    /**
+     * 任一阶段失败时回调提示信息；多个阶段因同一原因失败时只回调一次，取消时不回调
+     */
+    void whenFailed(Consumer<String> listener) {
+        Set<Throwable> reported = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+        for (CompletableFuture<?> stage : new CompletableFuture<?>[]{login, teachingWeek, curriculum}) {
+            stage.whenComplete((value, error) -> {
+                Throwable cause = unwrap(error);
+                if (cause instanceof StageException && !cancelled && reported.add(cause)) {
+                    listener.accept(cause.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 取消所有进行中和尚未发起的请求，已完成的阶段不受影响
+     */
+    void cancel() {
+        cancelled = true;
+        for (Call call : inFlight) {
+            call.cancel();
+        }
+        for (CompletableFuture<?> stage : new CompletableFuture<?>[]{login, teachingWeek, curriculum}) {
+            if (stage != null) {
+                stage.cancel(false);
+            }
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 记录从开始登录到此刻的总耗时，并输出本次各阶段耗时
+     * @param label 结束的原因，如课表已显示或课表无变化
+     */
+    void finish(String label) {
+        stageMillis.put(label, (System.nanoTime() - startNanos) / 1_000_000L);
+        StringBuilder builder = new StringBuilder("最近一次登录");
+        synchronized (stageMillis) {
+            for (Map.Entry<String, Long> entry : stageMillis.entrySet()) {
+                builder.append('\n').append(String.format(Locale.ROOT, "%s %dms", entry.getKey(), entry.getValue()));
+            }
+        }
+        lastTimingSummary = builder.toString();
+        Log.i(TAG, lastTimingSummary.replace('\n', ' '));
+    }
+
+    /**
+     * 最近一次完成的登录的各阶段耗时，用于诊断面板显示
+     */
+    static String getLastTimingSummary() {
+        return lastTimingSummary;
+    }
+
+    // 重新登录；登录请求由同一账号的所有登录流程共用，取消本次登录时不会取消它
+    private CompletableFuture<LoginResult> refreshSession(String username, Supplier<String> encryptedPassword) {
+        return store.refreshSession(username,
+                () -> execute("登录", newPost(baseUrl + "njwhd/login?userNo=" + username
+                        + "&pwd=" + encryptedPassword.get()).build(), false)
+                        .thenApply(reply -> parseLogin(reply.body)))
+                .thenApply(result -> result);
+    }
+
+    // 保存的 token 是否可用：返回了周次时可用，服务器拒绝或返回其他内容时需要重新登录，网络错误时直接失败
+    private static boolean isTokenAccepted(String body, Throwable error) {
+        if (error != null) {
+            Throwable cause = unwrap(error);
+            if (cause instanceof StageException) {
+                int code = ((StageException) cause).httpCode;
+                if (code == 401 || code == 403) {
+                    return false;
+                }
+            }
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        }
+        try {
+            return new JSONObject(body).has("nowWeek");
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    // 发起 POST 请求，同一地址只请求一次；取消返回的结果时同时取消请求
+    private CompletableFuture<String> post(String stage, String path) {
+        return requests.computeIfAbsent(path, key -> {
+            CompletableFuture<Reply> reply = execute(stage, newPost(baseUrl + key).build(), true);
+            CompletableFuture<String> body = reply.thenApply(r -> r.body);
+            body.whenComplete((value, error) -> {
+                if (body.isCancelled()) {
+                    reply.cancel(false);
+                }
+            });
+            return body;
+        });
+    }
+
+    // 取消某个地址的请求，尚未发起时之后也不再发起
+    private void cancelRequest(String path) {
+        CompletableFuture<String> cancelledRequest = new CompletableFuture<>();
+        cancelledRequest.cancel(false);
+        requests.computeIfAbsent(path, key -> cancelledRequest).cancel(false);
+    }
+
+    private static Request.Builder newPost(String url) {
+        return new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(new byte[0]));
+    }
+
+    /**
+     * 发起请求，2xx 和 304 视为成功
+     * @param cancellable 是否随 {@link #cancel()} 取消，多个登录流程共用的请求不取消
+     */
+    private CompletableFuture<Reply> execute(String stage, Request request, boolean cancellable) {
+        CompletableFuture<Reply> future = new CompletableFuture<>();
+        if (cancelled) {
+            future.cancel(false);
+            return future;
+        }
+        Call call = client.newCall(request);
+        if (cancellable) {
+            inFlight.add(call);
+        }
+        long start = System.nanoTime();
+        int cookie = traceCookies.incrementAndGet();
+        Trace.beginAsyncSection("xykcb:login:" + stage, cookie);
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                complete(null, new StageException(stage + "失败：" + e.getMessage()));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    int code = response.code();
+                    if (code == 304) {
+                        complete(new Reply(code, "", null, null), null);
+                    } else if (!response.isSuccessful()) {
+                        complete(null, new StageException(stage + "失败，错误码：" + code, code));
+                    } else if (body == null) {
+                        complete(null, new StageException(stage + "失败：服务器返回数据为空"));
+                    } else {
+                        complete(new Reply(code, body.string(), response.header("ETag"),
+                                response.header("Last-Modified")), null);
+                    }
+                } catch (IOException e) {
+                    complete(null, new StageException(stage + "失败：" + e.getMessage()));
+                }
+            }
+
+            private void complete(Reply reply, StageException error) {
+                inFlight.remove(call);
+                Trace.endAsyncSection("xykcb:login:" + stage, cookie);
+                stageMillis.put(stage, (System.nanoTime() - start) / 1_000_000L);
+                if (cancellable && cancelled) {
+                    future.cancel(false);
+                } else if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(reply);
+                }
+            }
+        });
+        // 等待结果的一方取消时一并取消请求
+        future.whenComplete((reply, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static LoginResult parseLogin(String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            String msg = json.optString("Msg", "");
+            if (msg.contains("成功")) {
+                JSONObject data = json.optJSONObject("data");
+                if (data != null && data.has("token")) {
+                    return new LoginResult(data.getString("token"), data.optString("name", ""),
+                            data.optString("academyName", ""), data.optString("clsName", ""));
+                }
+            } else if (msg.contains("错误")) {
+                throw failure("登录失败：该帐号不存在或密码错误");
+            }
+            throw failure("登录失败：服务器返回异常");
+        } catch (JSONException e) {
+            throw failure("登录失败：数据解析错误");
+        }
+    }
+
+    // 取序号最大的学年学期，即当前学期
+    private static String parseXnxq01id(String body) {
+        try {
+            JSONArray terms = new JSONArray(body);
+            JSONObject latest = null;
+            int maxNum = Integer.MIN_VALUE;
+            for (int i = 0; i < terms.length(); i++) {
+                JSONObject term = terms.getJSONObject(i);
+                int num = term.getInt("num");
+                if (num > maxNum) {
+                    maxNum = num;
+                    latest = term;
+                }
+            }
+            if (latest == null) {
+                throw failure("获取学年学期失败！");
+            }
+            return latest.getString("xnxq01id");
+        } catch (JSONException e) {
+            throw failure("解析学年学期数据失败：" + e.getMessage());
+        }
+    }
+
+    private static String parseKbjcmsid(String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            JSONArray data = json.optJSONArray("data");
+            if (data == null || data.length() == 0) {
+                throw failure("获取课程节次模式失败！");
+            }
+            return data.getJSONObject(0).getString("kbjcmsid");
+        } catch (JSONException e) {
+            throw failure("解析课程节次模式数据失败：" + e.getMessage());
+        }
+    }
+
+    private static Integer parseNowWeek(String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            if (!json.has("nowWeek")) {
+                throw failure("获取当前周次失败：服务器返回数据不完整");
+            }
+            return Integer.parseInt(json.getString("nowWeek").trim());
+        } catch (JSONException | NumberFormatException e) {
+            throw failure("解析周次数据失败：" + e.getMessage());
+        }
+    }
+
+    private static CompletionException failure(String message) {
+        return new CompletionException(new StageException(message));
+    }
+
+    /**
+     * 取出阶段异常的原始原因
+     */
+    static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
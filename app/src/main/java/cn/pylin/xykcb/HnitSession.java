@@ -0,0 +1,108 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 湖南工学院外网登录的会话：保存 token、获取时间和登录接口返回的用户信息
+ * 启动时先用保存的 token 请求接口，被服务器拒绝后才重新登录；
+ * 同一账号同时发起的多次重新登录共用同一个登录请求
+ */
+final class HnitSession {
+    private static final String TAG = "HnitSession";
+    private static final String PREFS_NAME = "LoginInfo";
+    private static final String KEY_TOKEN = "token";
+    private static final String KEY_ACQUIRED_AT = "tokenAcquiredAt";
+    // token 所属的账号，切换账号或修改密码后不再使用
+    private static final String KEY_ACCOUNT = "tokenAccount";
+    private static final String KEY_USER_NAME = "tokenUserName";
+    private static final String KEY_ACADEMY_NAME = "tokenAcademyName";
+    private static final String KEY_CLASS_NAME = "tokenClassName";
+    // 超过该时间的 token 不再尝试，直接重新登录
+    private static final long MAX_TOKEN_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static CompletableFuture<HnitLoginPipeline.LoginResult> refreshing;
+    private static String refreshingAccount;
+
+    private HnitSession() {
+    }
+
+    /**
+     * 读取保存的会话，没有会话、账号密码与保存的不一致或 token 已过期时返回 null
+     */
+    static HnitLoginPipeline.LoginResult load(Context context, String username, String password) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String token = prefs.getString(KEY_TOKEN, "");
+        if (token.isEmpty()
+                || !username.equals(prefs.getString(KEY_ACCOUNT, ""))
+                || !username.equals(prefs.getString("username", ""))
+                || !password.equals(prefs.getString("password", ""))) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - prefs.getLong(KEY_ACQUIRED_AT, 0);
+        if (age < 0 || age > MAX_TOKEN_AGE_MILLIS) {
+            return null;
+        }
+        Log.d(TAG, "使用保存的 token，已获取 " + age / 60_000 + " 分钟");
+        return new HnitLoginPipeline.LoginResult(token, prefs.getString(KEY_USER_NAME, ""),
+                prefs.getString(KEY_ACADEMY_NAME, ""), prefs.getString(KEY_CLASS_NAME, ""));
+    }
+
+    /**
+     * 重新登录并保存新的会话；同一账号已有登录请求进行中时直接共用它的结果
+     * @param login 发起登录请求，只在没有进行中的请求时调用
+     */
+    static CompletableFuture<HnitLoginPipeline.LoginResult> refresh(Context context, String username,
+            Supplier<CompletableFuture<HnitLoginPipeline.LoginResult>> login) {
+        Context appContext = context.getApplicationContext();
+        synchronized (HnitSession.class) {
+            if (refreshing != null && username.equals(refreshingAccount)) {
+                return refreshing;
+            }
+            CompletableFuture<HnitLoginPipeline.LoginResult> future = login.get().thenApply(result -> {
+                save(appContext, username, result);
+                return result;
+            });
+            refreshing = future;
+            refreshingAccount = username;
+            future.whenComplete((result, error) -> {
+                synchronized (HnitSession.class) {
+                    if (refreshing == future) {
+                        refreshing = null;
+                        refreshingAccount = null;
+                    }
+                }
+            });
+            return future;
+        }
+    }
+
+    /**
+     * 服务器拒绝 token 后调用，之后启动时不再尝试；token 已被新会话替换时不做处理
+     */
+    static void invalidate(Context context, String token) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        synchronized (HnitSession.class) {
+            if (token.equals(prefs.getString(KEY_TOKEN, ""))) {
+                prefs.edit().remove(KEY_TOKEN).remove(KEY_ACQUIRED_AT).apply();
+            }
+        }
+    }
+
+    private static void save(Context context, String username, HnitLoginPipeline.LoginResult result) {
+        synchronized (HnitSession.class) {
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                    .putString(KEY_TOKEN, result.token)
+                    .putLong(KEY_ACQUIRED_AT, System.currentTimeMillis())
+                    .putString(KEY_ACCOUNT, username)
+                    .putString(KEY_USER_NAME, result.userName)
+                    .putString(KEY_ACADEMY_NAME, result.academyName)
+                    .putString(KEY_CLASS_NAME, result.className)
+                    .apply();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 全应用共用的 OkHttpClient
+ * 各场景的客户端都由同一个基础客户端 newBuilder() 派生，只调整超时，共用调度线程池和连接池，
+ * 同一主机的 keep-alive 连接和 TLS 会话可以复用；TLS 会话同时保存到磁盘，进程重启后仍可恢复会话
+ */
+public final class HttpClients {
+    private static final String TAG = "HttpClients";
+    // 教务系统主机，启动时预先建立连接
+    static final String JW_BASE_URL = "https://jw.hnit.edu.cn/";
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+    // 构建基础客户端时 OkHttp 会加载系统信任的证书，放在后台线程进行
+    private static final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor();
+
+    // 由 prewarm 设置，用于 TLS 会话的磁盘缓存
+    private static volatile Context appContext;
+    private static volatile OkHttpClient baseClient;
+    private static OkHttpClient shortTimeoutClient;
+    private static OkHttpClient apiClient;
+    private static OkHttpClient downloadClient;
+
+    private HttpClients() {
+    }
+
+    /**
+     * 在后台线程提前构建基础客户端，在 Activity 启动时调用，重复调用无影响
+     * 之后第一次发起请求时无需在调用线程加载证书；在此之前已构建的客户端不带 TLS 会话磁盘缓存
+     */
+    public static void prewarm(Context context) {
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+        }
+        warmupExecutor.execute(HttpClients::base);
+    }
+
+    /**
+     * 教务系统接口和隐私政策等小请求：连接、读、写超时均为10秒
+     */
+    public static synchronized OkHttpClient shortTimeout() {
+        if (shortTimeoutClient == null) {
+            shortTimeoutClient = base().newBuilder()
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(10, TimeUnit.SECONDS)
+                    .writeTimeout(10, TimeUnit.SECONDS)
+                    .build();
+        }
+        return shortTimeoutClient;
+    }
+
+    /**
+     * 检查更新接口：连接10秒，读写30秒
+     */
+    public static synchronized OkHttpClient api() {
+        if (apiClient == null) {
+            apiClient = base().newBuilder()
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(30, TimeUnit.SECONDS)
+                    .writeTimeout(30, TimeUnit.SECONDS)
+                    .build();
+        }
+        return apiClient;
+    }
+
+    /**
+     * 安装包下载：连接30秒，读写60秒
+     */
+    public static synchronized OkHttpClient download() {
+        if (downloadClient == null) {
+            downloadClient = base().newBuilder()
+                    .connectTimeout(30, TimeUnit.SECONDS)
+                    .readTimeout(60, TimeUnit.SECONDS)
+                    .writeTimeout(60, TimeUnit.SECONDS)
+                    .build();
+        }
+        return downloadClient;
+    }
+
+    /**
+     * 预先与主机建立 TCP 和 TLS 连接并放入连接池，之后的请求直接复用
+     * 在后台线程构建客户端后发送一个 HEAD 请求，结果忽略
+     */
+    public static void preconnect(String url) {
+        warmupExecutor.execute(() -> {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .head()
+                    .build();
+            shortTimeout().newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    Log.d(TAG, "预连接失败：" + e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                }
+            });
+        });
+    }
+
+    private static OkHttpClient base() {
+        OkHttpClient client = baseClient;
+        if (client == null) {
+            synchronized (HttpClients.class) {
+                client = baseClient;
+                if (client == null) {
+                    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES));
+                    Context context = appContext;
+                    if (context != null) {
+                        installSessionCache(builder, context);
+                    }
+                    client = builder.build();
+                    baseClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    // 使用带磁盘会话缓存的平台 SSLSocketFactory，失败时保留 OkHttp 默认配置
+    // 加载信任证书和打开会话缓存目录较慢，通常由 prewarm 在 warmupExecutor 上执行
+    @SuppressWarnings("deprecation")
+    private static void installSessionCache(OkHttpClient.Builder builder, Context context) {
+        try {
+            TrustManagerFactory trustManagerFactory =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init((KeyStore) null);
+            X509TrustManager trustManager = null;
+            for (TrustManager manager : trustManagerFactory.getTrustManagers()) {
+                if (manager instanceof X509TrustManager) {
+                    trustManager = (X509TrustManager) manager;
+                    break;
+                }
+            }
+            if (trustManager == null) {
+                return;
+            }
+            SSLSocketFactory socketFactory = SSLCertificateSocketFactory.getDefault(
+                    HANDSHAKE_TIMEOUT_MILLIS, new SSLSessionCache(context));
+            builder.sslSocketFactory(socketFactory, trustManager);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            Log.w(TAG, "无法启用 TLS 会话磁盘缓存", e);
+        }
+    }
+}
@@ -5,37 +5,33 @@ import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Base64;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import android.view.Choreographer;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
-import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
 import okhttp3.FormBody;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 /**
  * 登录管理器类 - 合并了所有学校的登录逻辑
  */
 public class LoginManager {
+    // 在后台加载完整的本地课表
+    private static final ExecutorService localLoadExecutor = Executors.newSingleThreadExecutor();
+
     private final Context context;
     private final CourseDataCallback callback;
     private OkHttpClient httpClient;
@@ -45,6 +41,10 @@ public class LoginManager {
     private boolean hasAttemptedUpdate = false;
     // 标志变量：记录是否已经显示过首次获取课程的提示
     private boolean hasShownFirstCoursePrompt = false;
+    // 本次登录是否已经把本地课表交给界面显示，决定网络数据无变化时能否跳过刷新
+    private volatile boolean hasDeliveredLocalData = false;
+    // 本界面正在等待的课表同步
+    private volatile ScheduleRepository.Refresh activeRefresh;
     
     // 运行时变量：存储登录用户信息
     private String runtimeUserName = "";
@@ -93,6 +93,18 @@ public class LoginManager {
     public interface CourseDataCallback {
         void onCourseDataReceived(List<List<Course>> weeklyCourses);
         void onError(String message);
+
+        /**
+         * 同步到的课表与本地课表不同时回调，在 onCourseDataReceived 之前调用
+         */
+        default void onScheduleChanged(ScheduleDiff diff) {
+        }
+
+        /**
+         * 启动时先回调只包含指定周次课程的部分课表，完整课表随后通过 onCourseDataReceived 回调
+         */
+        default void onPartialCourseDataReceived(List<List<Course>> weekCourses, int week) {
+        }
     }
     
     /**
@@ -116,12 +128,23 @@ public class LoginManager {
     }
 
     /**
-     * 执行登录操作
+     * 执行登录操作，总是同步课表
      * @param username 用户名
      * @param password 密码
      * @param schoolCode 学校代码
      */
     public void performLogin(String username, String password, String schoolCode) {
+        performLogin(username, password, schoolCode, true);
+    }
+
+    /**
+     * 启动时恢复登录：先显示本地课表，距离上次同步不足最小间隔时不请求网络，见 {@link ScheduleRepository}
+     */
+    public void restoreLogin(String username, String password, String schoolCode) {
+        performLogin(username, password, schoolCode, false);
+    }
+
+    private void performLogin(String username, String password, String schoolCode, boolean forceRefresh) {
         if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
             notifyError("用户名或密码不能为空");
             return;
@@ -131,6 +154,7 @@ public class LoginManager {
         hasAttemptedUpdate = false;
         // 重置首次获取课程提示标志，确保每次应用运行时都能显示提示
         hasShownFirstCoursePrompt = false;
+        hasDeliveredLocalData = false;
         
         this.schoolCode = schoolCode;
         LoginType loginType = LoginType.fromCode(schoolCode);
@@ -149,7 +173,9 @@ public class LoginManager {
         // 然后根据学校类型执行不同的登录逻辑
         switch (loginType) {
             case HNIT_A:
-                performHnitALogin(username, password);
+                // 本地没有课表或周次时必须同步
+                performHnitALogin(username, password, forceRefresh || localCourseList.isEmpty()
+                        || !SemesterCalendar.get(context).isKnown());
                 break;
 //            case HNIT_B:
 //                performHnitBLogin(username, password);
@@ -161,85 +187,82 @@ public class LoginManager {
     }
 
     /**
-     * 湖南工学院外网登录
+     * 湖南工学院外网登录，各接口按依赖关系并行请求，见 {@link HnitLoginPipeline}
+     * 同一账号的同步已在进行时共用它的结果，见 {@link ScheduleRepository}
+     * @param forceRefresh 为 false 时，距离上次同步不足最小间隔则只使用本地课表
      */
-    private void performHnitALogin(String username, String password) {
-        // 初始化 OkHttpClient
-        httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .build();
-
-        String encryptedPassword = encryptPassword(password);
-        String loginUrl = "https://jw.hnit.edu.cn/njwhd/login?userNo=" + username + "&pwd=" + encryptedPassword;
-
-        Request request = new Request.Builder()
-                .url(loginUrl)
-                .post(RequestBody.create(new byte[0]))
-                .build();
+    private void performHnitALogin(String username, String password, boolean forceRefresh) {
+        // 使用全应用共用的客户端，复用启动时预先建立的连接
+        httpClient = HttpClients.shortTimeout();
+
+        if (!forceRefresh && !ScheduleRepository.needsRefresh(context, username)) {
+            // 刚同步过，用户信息取自保存的会话
+            HnitLoginPipeline.LoginResult session = HnitSession.load(context, username, password);
+            if (session != null) {
+                applyUserInfo(session);
+            }
+            return;
+        }
 
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                notifyError("登录失败");
+        ScheduleRepository.Refresh previous = activeRefresh;
+        ScheduleRepository.Refresh refresh = ScheduleRepository.refresh(context, username, () -> {
+            HnitLoginPipeline pipeline = new HnitLoginPipeline(
+                    new PreferencesLoginStore(context), httpClient, HttpClients.JW_BASE_URL);
+            // 有保存的会话时先使用保存的 token，被拒绝后才加密密码重新登录
+            pipeline.start(username, () -> encryptPassword(password), HnitSession.load(context, username, password));
+            return pipeline;
+        });
+        activeRefresh = refresh;
+        if (previous != null) {
+            // 先取得新的同步再释放旧的，两者相同时不会被取消
+            ScheduleRepository.release(previous);
+            if (previous == refresh) {
+                return;
             }
+        }
 
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (responseBody != null) {
-                            String responseString = responseBody.string();
-                            JSONObject jsonResponse = new JSONObject(responseString);
-                            
-                            // 获取Msg字段内容
-                            String msg = jsonResponse.optString("Msg", "");
-                            
-                            // 根据Msg内容判断登录结果
-                            if (msg.contains("成功")) {
-                                // 登录成功，检查是否有token
-                                if (jsonResponse.has("data") && jsonResponse.getJSONObject("data").has("token")) {
-                                    JSONObject data = jsonResponse.getJSONObject("data");
-                                    String token = data.getString("token");
-                                    saveLoginInfo(username, password);
-                                    // 保存token用于后续获取周次
-                                    SharedPreferences sharedPreferences = context.getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
-                                    SharedPreferences.Editor editor = sharedPreferences.edit();
-                                    editor.putString("token", token);
-                                    
-                                    // 保存用户信息到运行时变量
-                                    if (data.has("name")) {
-                                        runtimeUserName = data.getString("name");
-                                    }
-                                    if (data.has("academyName")) {
-                                        runtimeAcademyName = data.getString("academyName");
-                                    }
-                                    if (data.has("clsName")) {
-                                        runtimeClassName = data.getString("clsName");
-                                    }
-                                    editor.apply();
-                                    
-                                    getXnxqListId(token);
-                                } else {
-                                    notifyError("登录失败：服务器返回异常");
-                                }
-                            } else if (msg.contains("错误")) {
-                                // 账号或密码错误
-                                notifyError("登录失败：该帐号不存在或密码错误");
-                            } else {
-                                // 其他未知情况
-                                notifyError("登录失败：服务器返回异常");
-                            }
-                        }
-                    } catch (JSONException e) {
-                        notifyError("登录失败：数据解析错误");
-                    }
-                } else {
-                    notifyError("登录失败：服务器错误");
+        HnitLoginPipeline pipeline = refresh.getPipeline();
+        pipeline.getLogin().thenAccept(result -> {
+            saveLoginInfo(username, password);
+            applyUserInfo(result);
+        });
+        refresh.getResult().whenComplete((result, error) -> {
+            if (result != null) {
+                onScheduleRefreshed(refresh, result);
+            } else {
+                Throwable cause = HnitLoginPipeline.unwrap(error);
+                // 请求失败由 whenFailed 提示，这里只处理解析和保存时的错误
+                if (!(cause instanceof HnitLoginPipeline.StageException)
+                        && !(cause instanceof CancellationException)) {
+                    notifyError("解析课程列表数据失败：" + cause.getMessage());
                 }
             }
         });
+        pipeline.whenFailed(this::notifyError);
+    }
+
+    /**
+     * 释放正在进行的同步，界面关闭、ViewModel 清除时调用；没有其他界面等待时取消尚未完成的请求
+     */
+    public void cancel() {
+        ScheduleRepository.Refresh refresh = activeRefresh;
+        if (refresh != null) {
+            activeRefresh = null;
+            ScheduleRepository.release(refresh);
+        }
+    }
+
+    // 保存用户信息到运行时变量
+    private void applyUserInfo(HnitLoginPipeline.LoginResult result) {
+        if (!result.userName.isEmpty()) {
+            runtimeUserName = result.userName;
+        }
+        if (!result.academyName.isEmpty()) {
+            runtimeAcademyName = result.academyName;
+        }
+        if (!result.className.isEmpty()) {
+            runtimeClassName = result.className;
+        }
     }
 
     void loadLocalCourseData() {
@@ -249,24 +272,34 @@ public class LoginManager {
 
             if (!localCourseList.isEmpty()) {
                 // 检查是否有保存的真实周次信息
-                SharedPreferences weekPrefs = context.getSharedPreferences("WeekDates", Context.MODE_PRIVATE);
-                if (weekPrefs.getAll().isEmpty()) {
-                    // 如果没有周次信息，尝试从网络获取真实周次
+                if (!SemesterCalendar.get(context).isKnown()) {
+                    // 没有周次信息时等待登录流程获取真实周次，课程列表随后一起显示
                     SharedPreferences loginPrefs = context.getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
-                    String token = loginPrefs.getString("token", "");
-                    if (!token.isEmpty()) {
-                        getCurrentWeekFromApi(token);
-                        return; // 等待网络获取完成后再加载数据
+                    if (!loginPrefs.getString("token", "").isEmpty()) {
+                        return;
                     }
                 }
                 
-                // 使用现有的周次信息
-                int currentWeek = CourseDataManager.getCurrentWeek(context);
-                // 更新MainActivity中的Week静态变量，确保UI显示正确的周次
-                MainActivity.Week = String.valueOf(currentWeek);
-                
-                List<List<Course>> weeklyCourses = CourseDataManager.parseCourseData(localCourseList);
-                callback.onCourseDataReceived(weeklyCourses);
+                // 先只解码当前周的课程交给界面绘制第一帧，完整课表在后台解析后再替换
+                int week = CourseDataManager.getCurrentWeek(context);
+                List<List<Course>> weekCourses = CourseDataManager.readWeekCourses(context, week);
+                if (weekCourses != null) {
+                    callback.onPartialCourseDataReceived(weekCourses, week);
+                }
+                localLoadExecutor.execute(() -> {
+                    try {
+                        // 界面在收到数据后按日期选中当前周次
+                        ScheduleCache.Snapshot loaded = ScheduleCache.get(context);
+                        if (ScheduleCache.peek() != loaded) {
+                            // 加载期间同步或自定义课程已发布了更新的课表，界面通过订阅收到，不再用旧数据覆盖
+                            return;
+                        }
+                        hasDeliveredLocalData = true;
+                        callback.onCourseDataReceived(loaded.getStandardCourses());
+                    } catch (Exception e) {
+                        notifyError("加载本地数据失败");
+                    }
+                });
             } else {
                 notifyError("正在尝试更新数据...");
             }
@@ -340,263 +373,38 @@ public class LoginManager {
     }
 
     /**
-     * 获取学年学期ID（湖南工学院外网登录使用）
-     */
-    private void getXnxqListId(String token) {
-        String XnxqListIdUrl = "https://jw.hnit.edu.cn/njwhd/getXnxqList?token=" + token;
-
-        Request request = new Request.Builder()
-                .url(XnxqListIdUrl)
-                .post(RequestBody.create(new byte[0]))
-                .build();
-
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                notifyError("获取学年学期失败：" + e.getMessage());
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (responseBody != null) {
-                            String responseString = responseBody.string();
-                            JSONArray jsonArray = new JSONArray(responseString);
-                            JSONObject maxNumObject = null;
-                            int maxNum = Integer.MIN_VALUE;
-
-                            for (int i = 0; i < jsonArray.length(); i++) {
-                                JSONObject jsonObject = jsonArray.getJSONObject(i);
-                                int num = jsonObject.getInt("num");
-                                if (num > maxNum) {
-                                    maxNum = num;
-                                    maxNumObject = jsonObject;
-                                }
-                            }
-
-                            if (maxNumObject != null) {
-                                String xnxq01id = maxNumObject.getString("xnxq01id");
-                                // 先获取当前周次，然后在回调中获取课程列表
-                                getCurrentWeekFromApi(token);
-                                // 同时获取课程节次模式
-                                getKbjcmsid(token, xnxq01id);
-                            } else {
-                                notifyError("获取学年学期失败！");
-                            }
-                        }
-                    } catch (JSONException e) {
-                        notifyError("解析学年学期数据失败：" + e.getMessage());
-                    }
-                } else {
-                    notifyError("获取学年学期失败，错误码：" + response.code());
-                }
-            }
-        });
-    }
-
-    private void getCurrentWeekFromApi(String token) {
-        String teachingWeekUrl = "https://jw.hnit.edu.cn/njwhd/teachingWeek?token=" + token;
-
-        Request request = new Request.Builder()
-                .url(teachingWeekUrl)
-                .post(RequestBody.create(new byte[0]))
-                .build();
-
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                notifyError("获取当前周次失败：" + e.getMessage());
-                currentWeek = "1";
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (responseBody != null) {
-                            String responseString = responseBody.string();
-                            JSONObject jsonResponse = new JSONObject(responseString);
-                            if (jsonResponse.has("nowWeek")) {
-                                String week = jsonResponse.getString("nowWeek");
-                                currentWeek = week;
-                                // 计算并保存每周的日期范围
-                                calculateAndSaveWeekDates(Integer.parseInt(currentWeek));
-                                
-                                // 保存当前周次到SharedPreferences
-                                SharedPreferences prefs = context.getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
-                                prefs.edit().putString("currentWeek", currentWeek).apply();
-
-                            } else {
-                                notifyError("获取当前周次失败：服务器返回数据不完整");
-                                currentWeek = "1";
-                            }
-                        }
-                    } catch (JSONException e) {
-                        notifyError("解析周次数据失败：" + e.getMessage());
-                        currentWeek = "1";
-                    }
-                } else {
-                    notifyError("获取当前周次失败，错误码：" + response.code());
-                    currentWeek = "1";
-                }
-            }
-        });
-    }
-
-    /**
-     * 计算并保存每周的日期范围
-     * @param currentWeek 当前周数
+     * 课表同步完成（湖南工学院外网登录使用）
      */
-    private void calculateAndSaveWeekDates(int currentWeek) {
-        try {
-            // 获取当前系统日期
-            Calendar calendar = Calendar.getInstance();
-            int todayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-            
-            // 计算本周周一的日期（Calendar中周日是1，周一是2，所以需要调整）
-            int daysToMonday = (todayOfWeek == Calendar.SUNDAY) ? -6 : 2 - todayOfWeek;
-            calendar.add(Calendar.DAY_OF_MONTH, daysToMonday);
-            
-            // 计算第1周周一的日期
-            calendar.add(Calendar.DAY_OF_MONTH, -(currentWeek - 1) * 7);
-            Calendar firstWeekMonday = (Calendar) calendar.clone();
-            
-            // 保存每周的日期范围
-            SharedPreferences weekDatesPrefs = context.getSharedPreferences("WeekDates", Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = weekDatesPrefs.edit();
-            editor.clear(); // 清除旧数据
-            
-            SimpleDateFormat sdf = new SimpleDateFormat("M.d", Locale.getDefault());
-            
-            // 计算并保存每周的日期范围（支持1-24周）
-            for (int week = 1; week <= 24; week++) {
-                Calendar weekStart = (Calendar) firstWeekMonday.clone();
-                weekStart.add(Calendar.DAY_OF_MONTH, (week - 1) * 7);
-                Calendar weekEnd = (Calendar) weekStart.clone();
-                weekEnd.add(Calendar.DAY_OF_MONTH, 6);
-                
-                StringBuilder dateRange = new StringBuilder();
-                for (int day = 0; day < 7; day++) {
-                    Calendar currentDay = (Calendar) weekStart.clone();
-                    currentDay.add(Calendar.DAY_OF_MONTH, day);
-                    dateRange.append(sdf.format(currentDay.getTime()));
-                    if (day < 6) {
-                        dateRange.append(",");
-                    }
-                }
-                
-                editor.putString(String.valueOf(week), dateRange.toString());
-            }
-            
-            editor.apply();
-        } catch (Exception e) {
+    private void onScheduleRefreshed(ScheduleRepository.Refresh refresh, ScheduleRepository.Result result) {
+        if (activeRefresh != refresh) {
+            return;
         }
-    }
+        HnitLoginPipeline pipeline = refresh.getPipeline();
 
-    /**
-     * 获取课程节次模式（湖南工学院外网登录使用）
-     */
-    private void getKbjcmsid(String token, String xnxq01id) {
-        String sjkbmsUrl = "https://jw.hnit.edu.cn/njwhd/Get_sjkbms?token=" + token;
+        // 设置标志表示已经尝试过网络更新
+        hasAttemptedUpdate = true;
 
-        Request request = new Request.Builder()
-                .url(sjkbmsUrl)
-                .post(RequestBody.create(new byte[0]))
-                .build();
-
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                notifyError("获取课程节次模式失败：" + e.getMessage());
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (responseBody != null) {
-                            String responseString = responseBody.string();
-                            JSONObject jsonResponse = new JSONObject(responseString);
-                            if (jsonResponse.has("data") && jsonResponse.getJSONArray("data").length() > 0) {
-                                String kbjcmsid = jsonResponse.getJSONArray("data").getJSONObject(0).getString("kbjcmsid");
-                                getCourseList(token, xnxq01id, kbjcmsid);
-                            } else {
-                                notifyError("获取课程节次模式失败！");
-                            }
-                        }
-                    } catch (JSONException e) {
-                        notifyError("解析课程节次模式数据失败：" + e.getMessage());
-                    }
-                } else {
-                    notifyError("获取课程节次模式失败，错误码：" + response.code());
-                }
-            }
-        });
-    }
-
-    /**
-     * 获取课程列表（湖南工学院外网登录使用）
-     */
-    private void getCourseList(String token, String xnxq01id, String kbjcmsid) {
-        String CourseListUrl = "https://jw.hnit.edu.cn/njwhd/student/curriculum?token=" + token +
-                "&xnxq01id=" + xnxq01id + "&kbjcmsid=" + kbjcmsid + "&week=all";
-
-        Request request = new Request.Builder()
-                .url(CourseListUrl)
-                .post(RequestBody.create(new byte[0]))
-                .build();
-
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                notifyError("获取课程列表失败：" + e.getMessage());
-            }
+        // 如果是应用运行后第一次成功获取课程数据，显示提示
+        if (!hasShownFirstCoursePrompt) {
+            hasShownFirstCoursePrompt = true;
+            showFirstCoursePrompt();
+        }
 
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (responseBody != null) {
-                            String newCourseList = responseBody.string();
-
-                            SharedPreferences sharedPreferences = context.getSharedPreferences("CourseListInfo", Context.MODE_PRIVATE);
-                            String existingCourseList = sharedPreferences.getString("CourseList", "");
-
-                            // 设置标志表示已经尝试过网络更新
-                            hasAttemptedUpdate = true;
-                            
-                            // 直接保存新的课程数据，不进行比对
-                            sharedPreferences.edit().putString("CourseList", newCourseList).apply();
-
-                            List<List<Course>> weeklyCourses = CourseDataManager.parseCourseData(newCourseList);
-                            // 设置当前周次
-                            SharedPreferences loginPrefs = context.getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
-                            String token = loginPrefs.getString("token", "");
-                            if (!token.isEmpty()) {
-                                getCurrentWeekFromApi(token);
-                            }
-                            
-                            // 如果是应用运行后第一次成功获取课程数据，显示提示
-                            if (!hasShownFirstCoursePrompt) {
-                                hasShownFirstCoursePrompt = true;
-                                showFirstCoursePrompt();
-                            }
-                            
-                            callback.onCourseDataReceived(weeklyCourses);
-                        }
-                    } catch (Exception e) {
-                        notifyError("解析课程列表数据失败：" + e.getMessage());
-                    }
-                } else {
-                    notifyError("获取课程列表失败，错误码：" + response.code());
-                }
+        // 课表没有变化且本地课表已经显示时不再刷新界面
+        if (result.saved || !hasDeliveredLocalData) {
+            if (!result.diff.getChanges().isEmpty()) {
+                callback.onScheduleChanged(result.diff);
             }
-        });
+            callback.onCourseDataReceived(result.courses);
+            // 界面在主线程设置课表，之后的第一帧即新课表显示的时间
+            new Handler(Looper.getMainLooper()).post(() -> Choreographer.getInstance()
+                    .postFrameCallback(frameTimeNanos -> pipeline.finish("登录到显示")));
+        } else {
+            pipeline.finish("登录到确认课表无变化");
+        }
     }
 
 
-    
     /**
      * 从系统获取当前周次（湖南工学院内网登录使用）
      */
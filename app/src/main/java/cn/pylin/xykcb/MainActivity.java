@@ -1,14 +1,12 @@
 package cn.pylin.xykcb;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -18,13 +16,13 @@ import android.graphics.Color;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Trace;
 import android.text.Editable;
 import android.text.InputType;
 import android.text.TextWatcher;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewTreeObserver;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
@@ -39,23 +37,24 @@ import android.view.Gravity;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import androidx.recyclerview.widget.LinearLayoutManager;
-import androidx.recyclerview.widget.RecyclerView;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.viewpager2.widget.ViewPager2;
+import java.io.File;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 
 public class MainActivity extends AppCompatActivity {
-    static String Week;
     private long lastBackPressedTime = 0;
     private static final int BACK_PRESS_INTERVAL = 2000;
-    public static RecyclerView recyclerView;
+    private ViewPager2 weekPager;
+    private ScheduleViewModel viewModel; // 课表状态，Activity 重建后保留
     private CourseAdapter adapter;
     private LoginManager loginManager;
     private UpdateManager updateManager;
     private Switch switchDailyCourseReminder; // 添加为成员变量，解决作用域问题
-    private CustomCourseUpdateReceiver customCourseUpdateReceiver; // 自定义课程更新广播接收器
+    private FrameStats.Tracker frameTracker; // 界面可见期间收集帧耗时
     
 
 
@@ -82,13 +81,18 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // 在后台构建网络客户端；已登录时先与教务系统建立连接，与读取本地课表和创建界面同时进行
+        HttpClients.prewarm(this);
+        if (savedInstanceState == null && hasSavedLogin()) {
+            HttpClients.preconnect(HttpClients.JW_BASE_URL);
+        }
         setContentView(R.layout.activity_main);
 
         // 先初始化所有View组件
-        recyclerView = findViewById(R.id.recyclerView);
-        recyclerView.setOverScrollMode(View.OVER_SCROLL_NEVER);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        recyclerView.setHasFixedSize(true);
+        viewModel = new ViewModelProvider(this).get(ScheduleViewModel.class);
+        // 小组件订阅课表变化，课表或自定义课程更新后直接刷新
+        CourseWidgetProvider.observeSchedule(this);
+        weekPager = findViewById(R.id.weekPager);
 
         TextView toolbarTitle = findViewById(R.id.toolbar_title);
         toolbarTitle.setOnClickListener(v -> showToolbarTitleDialog());
@@ -96,74 +100,30 @@ public class MainActivity extends AppCompatActivity {
         initNoteEditText();
         
         // 初始化更新管理器
-        updateManager = new UpdateManager(this, recyclerView);
+        updateManager = new UpdateManager(this, weekPager);
 
         // 在登录之前创建空白的课程列表UI
         createEmptyCourseListUI();
 
-        // 然后初始化登录管理器
-        loginManager = new LoginManager(this, new LoginManager.CourseDataCallback() {
-            @Override
-            public void onCourseDataReceived(List<List<Course>> weeklyCourses) {
-                runOnUiThread(() -> {
-                    try {
-                        String[] weekHeaders = new String[] { "周一", "周二", "周三", "周四", "周五", "周六", "周日" };
-                        // 使用基于日期判断的周次，确保本地数据也能显示正确周次
-                        Week = String.valueOf(CourseDataManager.getCurrentWeek(MainActivity.this));
-                        
-                        // 合并标准课程和自定义课程
-                        List<List<Course>> mergedCourses = CourseDataManager.getMergedCourses(MainActivity.this, weeklyCourses);
-
-                        if (adapter == null) {
-                            // 先获取RecyclerView的高度，再创建adapter
-                            recyclerView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-                                @Override
-                                public void onGlobalLayout() {
-                                    recyclerView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                                    int recyclerViewHeight = recyclerView.getHeight() - recyclerView.getPaddingTop() - recyclerView.getPaddingBottom();
-                                    
-                                    // 在获取到正确高度后创建adapter
-                                    adapter = new CourseAdapter(MainActivity.this, mergedCourses, weekHeaders);
-                                    adapter.setRecyclerViewHeight(recyclerViewHeight);
-                                    recyclerView.setAdapter(adapter);
-                                }
-                            });
-                        } else {
-                            // 复用现有adapter，更新数据
-                            adapter.updateCourses(mergedCourses);
-                        }
-                        
-                        // 获取并设置当前周次
-                        int currentWeekNum = CourseDataManager.getCurrentWeek(MainActivity.this);
-                        adapter.setCurrentWeek(currentWeekNum);
-                    } catch (Exception e) {
-                        //
-                    }
-                });
+        // 登录管理器由 ViewModel 持有，Activity 重建后继续使用同一个，结果通过 LiveData 显示在当前界面
+        loginManager = viewModel.getLoginManager();
+        viewModel.getLoginMessage().observe(this, message -> {
+            if (!message.markHandled()) {
+                return;
             }
-
-            @Override
-            public void onError(String message) {
-                runOnUiThread(() -> {
-                    CustomToast.showShortToast(MainActivity.this, message);
-                    
-                    // 如果错误消息包含"登录失败"或"登录过期"，重新拉起登录窗口
-                    if (message.contains("登录失败") || message.contains("暂不支持")) {
-                        // 登录失败后将周次切换为全部周次（仅对"登录失败"生效）
-                        if (message.contains("登录失败") && adapter != null) {
-                            adapter.setShowAllWeeks(true);
-                        }
-                        showLoginDialog();
-                    }
-                });
+            CustomToast.showShortToast(MainActivity.this, message.text);
+            if (message.requiresLogin) {
+                showLoginDialog();
             }
         });
 
         initNoteEditText();
-        checkLoginStatus();
-        
-        // 注册自定义课程更新广播接收器
-        registerCustomCourseUpdateReceiver();
+        // Activity 重建时登录仍在 ViewModel 中进行，不再重新登录；未登录时重新显示登录窗口
+        if (viewModel.markLoadStarted()) {
+            checkLoginStatus();
+        } else if (!hasSavedCredentials()) {
+            showLoginDialog();
+        }
     }
 
     private void initNoteEditText() {
@@ -203,49 +163,44 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * 在登录之前创建空白的课程列表UI
+     * 在登录之前创建课程列表UI，显示 ViewModel 中的课表（首次启动时为空白课表）
      */
     private void createEmptyCourseListUI() {
-        // 直接在主线程中创建空白的课程列表UI
+        // 直接在主线程中创建课程列表UI
         try {
-            // 创建空的课程数据（7天的空列表）
-            List<List<Course>> emptyCourses = new ArrayList<>();
-            for (int i = 0; i < 7; i++) {
-                emptyCourses.add(new ArrayList<>());
-            }
-            
             String[] weekHeaders = new String[] { "周一", "周二", "周三", "周四", "周五", "周六", "周日" };
-            Week = "1"; // 默认显示第一周
-            
-            // 获取RecyclerView的高度，然后创建adapter
-            recyclerView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-                @Override
-                public void onGlobalLayout() {
-                    recyclerView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                    int recyclerViewHeight = recyclerView.getHeight() - recyclerView.getPaddingTop() - recyclerView.getPaddingBottom();
-                    
-                    // 创建空的课程适配器
-                    adapter = new CourseAdapter(MainActivity.this, emptyCourses, weekHeaders);
-                    adapter.setRecyclerViewHeight(recyclerViewHeight);
-                    adapter.setCurrentWeek(1); // 设置当前周次为第一周
-                    recyclerView.setAdapter(adapter);
-
-                }
-            });
+            // 周次翻页按自身尺寸绘制，不需要等待布局完成
+            adapter = new CourseAdapter(MainActivity.this, weekPager, viewModel, weekHeaders);
         } catch (Exception e) {
             // 如果出现异常，确保UI不会崩溃
             e.printStackTrace();
         }
     }
 
+    // 是否保存了可自动登录的湖南工学院账号
+    private boolean hasSavedLogin() {
+        SharedPreferences sharedPreferences = getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
+        return !sharedPreferences.getString("username", "").isEmpty()
+                && !sharedPreferences.getString("password", "").isEmpty()
+                && LoginManager.LoginType.HNIT_A.getCode().equals(sharedPreferences.getString("schoolCode", "HNIT-A"));
+    }
+
+    // 是否保存了账号和密码
+    private boolean hasSavedCredentials() {
+        SharedPreferences sharedPreferences = getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
+        return !sharedPreferences.getString("username", "").isEmpty()
+                && !sharedPreferences.getString("password", "").isEmpty();
+    }
+
     private void checkLoginStatus() {
         SharedPreferences sharedPreferences = getSharedPreferences("LoginInfo", Context.MODE_PRIVATE);
         String savedUsername = sharedPreferences.getString("username", "");
         String savedPassword = sharedPreferences.getString("password", "");
         String savedSchoolCode = sharedPreferences.getString("schoolCode", "HNIT-A");
 
-        if (!savedUsername.isEmpty() && !savedPassword.isEmpty()) {
-            loginManager.performLogin(savedUsername, savedPassword, savedSchoolCode);
+        if (hasSavedCredentials()) {
+            // 启动时先显示本地课表，刚同步过时不再请求网络
+            loginManager.restoreLogin(savedUsername, savedPassword, savedSchoolCode);
         } else {
             showLoginDialog();
         }
@@ -512,9 +467,36 @@ public class MainActivity extends AppCompatActivity {
         dialog.dismiss();
     }
 
+    /**
+     * 诊断面板：显示各界面的帧耗时统计、最近一次登录的各阶段耗时和课表同步状态，帧耗时可导出为 JSON 文件
+     */
+    private void showDiagnosticsDialog() {
+        new AlertDialog.Builder(this, R.style.DialogTheme)
+                .setTitle("帧耗时诊断")
+                .setMessage(FrameStats.summary() + "\n\n" + HnitLoginPipeline.getLastTimingSummary()
+                        + "\n课表状态 " + ScheduleRepository.getState())
+                .setPositiveButton("导出JSON", (d, which) -> {
+                    File file = FrameStats.exportJson(this);
+                    if (file != null) {
+                        CustomToast.showShortToast(this, "已导出到 " + file.getAbsolutePath());
+                    } else {
+                        CustomToast.showShortToast(this, "导出失败");
+                    }
+                })
+                .setNeutralButton("清空", (d, which) -> FrameStats.clear())
+                .setNegativeButton("关闭", null)
+                .show();
+    }
+
     private void showToolbarTitleDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this, R.style.DialogTheme);
-        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_toolbar_title, null);
+        Trace.beginSection("xykcb:inflateToolbarTitleDialog");
+        View dialogView;
+        try {
+            dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_toolbar_title, null);
+        } finally {
+            Trace.endSection();
+        }
     
         // 获取标签按钮
         Button btnTabMine = dialogView.findViewById(R.id.btn_tab_mine);
@@ -665,12 +647,18 @@ public class MainActivity extends AppCompatActivity {
         } catch (Exception e) {
             tvVersionInfo.setText("版本号：获取失败");
         }
+        // 隐藏的诊断面板：长按版本号打开
+        tvVersionInfo.setOnLongClickListener(v -> {
+            showDiagnosticsDialog();
+            return true;
+        });
     
 
 
         builder.setView(dialogView);
         AlertDialog dialog = builder.create();
         dialog.show();
+        FrameStats.trackDialog(dialog, "ToolbarTitleDialog");
     
         // 当前选中的标签（0=我的，1=设置，2=关于）
         final int[] currentTab = {0};
@@ -841,13 +829,19 @@ public class MainActivity extends AppCompatActivity {
         refreshWidget();
         // 检查更新
         updateManager.checkForUpdates();
+        // 开始收集课表界面的帧耗时
+        if (frameTracker == null) {
+            frameTracker = FrameStats.track(getWindow(), "MainActivity");
+        }
     }
-    
+
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        // 取消注册自定义课程更新广播接收器
-        unregisterCustomCourseUpdateReceiver();
+    protected void onPause() {
+        super.onPause();
+        if (frameTracker != null) {
+            frameTracker.stop();
+            frameTracker = null;
+        }
     }
 
     @Override
@@ -863,11 +857,6 @@ public class MainActivity extends AppCompatActivity {
      * 处理屏幕方向变化的UI重载逻辑
      */
     private void handleOrientationChange() {
-        // 重新设置RecyclerView的LayoutManager以适应新的屏幕尺寸
-        if (recyclerView != null) {
-            recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        }
-        
         // 更新UI布局
         updateUILayout();
         
@@ -881,18 +870,8 @@ public class MainActivity extends AppCompatActivity {
      * 统一更新UI布局
      */
     private void updateUILayout() {
-        // 重新计算RecyclerView高度
-        if (adapter != null && recyclerView != null) {
-            recyclerView.post(() -> {
-                int recyclerViewHeight = recyclerView.getHeight() - recyclerView.getPaddingTop() - recyclerView.getPaddingBottom();
-                adapter.setRecyclerViewHeight(recyclerViewHeight);
-                
-                // 通知适配器数据变化，触发UI重绘
-                if (adapter.getItemCount() > 0) {
-                    adapter.notifyDataSetChanged();
-                }
-            });
-        }
+        // 课表尺寸变化时自行重新计算格子，这里只需在方向变化时重新构建格子文本
+        viewModel.setLandscape(getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE);
     }
 
     /**
@@ -1025,61 +1004,6 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    /**
-     * 注册自定义课程更新广播接收器
-     */
-    @SuppressLint("UnspecifiedRegisterReceiverFlag")
-    private void registerCustomCourseUpdateReceiver() {
-        if (customCourseUpdateReceiver == null) {
-            customCourseUpdateReceiver = new CustomCourseUpdateReceiver();
-            IntentFilter filter = new IntentFilter("CUSTOM_COURSE_UPDATED");
-            // 为Android 15+添加包名过滤器，确保广播只在应用内传递
-            filter.addCategory(getPackageName());
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
-                registerReceiver(customCourseUpdateReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-            } else {
-                registerReceiver(customCourseUpdateReceiver, filter);
-            }
-        }
-    }
-    
-    /**
-     * 取消注册自定义课程更新广播接收器
-     */
-    private void unregisterCustomCourseUpdateReceiver() {
-        if (customCourseUpdateReceiver != null) {
-            try {
-                unregisterReceiver(customCourseUpdateReceiver);
-                customCourseUpdateReceiver = null;
-            } catch (IllegalArgumentException e) {
-                // 接收器可能已经被取消注册，忽略异常
-            }
-        }
-    }
-    
-    /**
-     * 自定义课程更新广播接收器
-     */
-    private class CustomCourseUpdateReceiver extends android.content.BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if ("CUSTOM_COURSE_UPDATED".equals(intent.getAction())) {
-                // 收到自定义课程更新通知，刷新课程表
-                refreshCourseTable();
-            }
-        }
-    }
-    
-    /**
-     * 刷新课程表数据
-     */
-    void refreshCourseTable() {
-        if (loginManager != null) {
-            // 重新加载课程数据
-            loginManager.loadLocalCourseData();
-        }
-    }
-
     private void showManageCustomCoursesDialog() {
         CustomCourseManagementDialog dialog = new CustomCourseManagementDialog(this);
         dialog.show();
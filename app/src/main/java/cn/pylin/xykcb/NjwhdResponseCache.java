@@ -0,0 +1,97 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 教务系统元数据接口（学年学期列表、课程节次模式）的响应缓存，按账号分别保存
+ * 每个接口有各自的有效期：有效期内直接使用缓存，不发请求；过期后带 If-None-Match / If-Modified-Since 重新验证，
+ * 服务器返回 304 时沿用缓存。服务器不返回 ETag / Last-Modified 时过期后重新获取完整响应，请求失败时仍可使用缓存
+ * OkHttp 自带的 HTTP 缓存不缓存 POST 请求，这些接口只接受 POST，所以在这里单独缓存
+ */
+final class NjwhdResponseCache {
+    private static final String PREFS_NAME = "NjwhdCache";
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    enum Endpoint {
+        // 学期切换时才变化
+        XNXQ_LIST("getXnxqList", 24 * HOUR_MILLIS),
+        // 整个学期基本不变
+        SJKBMS("Get_sjkbms", 7 * 24 * HOUR_MILLIS);
+
+        final String path;
+        final long ttlMillis;
+
+        Endpoint(String path, long ttlMillis) {
+            this.path = path;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
+    /**
+     * 缓存的一次响应和服务器给出的验证头，没有验证头时为空字符串
+     */
+    static final class Entry {
+        final String body;
+        final String etag;
+        final String lastModified;
+        final long storedAt;
+
+        Entry(String body, String etag, String lastModified, long storedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+        }
+
+        boolean isFresh(Endpoint endpoint) {
+            long age = System.currentTimeMillis() - storedAt;
+            return age >= 0 && age < endpoint.ttlMillis;
+        }
+    }
+
+    private NjwhdResponseCache() {
+    }
+
+    private static String key(Endpoint endpoint, String account) {
+        return endpoint.path + "|" + account;
+    }
+
+    /**
+     * 读取缓存的响应，没有时返回 null
+     */
+    static Entry get(Context context, Endpoint endpoint, String account) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String key = key(endpoint, account);
+        String body = prefs.getString(key + ".body", null);
+        if (body == null) {
+            return null;
+        }
+        return new Entry(body, prefs.getString(key + ".etag", ""), prefs.getString(key + ".lastModified", ""),
+                prefs.getLong(key + ".storedAt", 0));
+    }
+
+    /**
+     * 保存新的响应，调用方应先确认响应内容可以解析
+     * @param etag 响应的 ETag 头，没有时为 null
+     * @param lastModified 响应的 Last-Modified 头，没有时为 null
+     */
+    static void put(Context context, Endpoint endpoint, String account, String body, String etag, String lastModified) {
+        String key = key(endpoint, account);
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(key + ".body", body)
+                .putString(key + ".etag", etag != null ? etag : "")
+                .putString(key + ".lastModified", lastModified != null ? lastModified : "")
+                .putLong(key + ".storedAt", System.currentTimeMillis())
+                .apply();
+    }
+
+    /**
+     * 服务器确认缓存仍然有效（304），重新开始计算有效期
+     */
+    static void touch(Context context, Endpoint endpoint, String account) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(key(endpoint, account) + ".storedAt", System.currentTimeMillis())
+                .apply();
+    }
+}
@@ -0,0 +1,45 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 登录流程的本地存储：会话保存在 LoginInfo（见 {@link HnitSession}），
+ * 元数据接口的响应缓存保存在 NjwhdCache（见 {@link NjwhdResponseCache}）
+ */
+final class PreferencesLoginStore implements HnitLoginPipeline.Store {
+    private final Context context;
+
+    PreferencesLoginStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public CompletableFuture<HnitLoginPipeline.LoginResult> refreshSession(String username,
+            Supplier<CompletableFuture<HnitLoginPipeline.LoginResult>> login) {
+        return HnitSession.refresh(context, username, login);
+    }
+
+    @Override
+    public void invalidateSession(String token) {
+        HnitSession.invalidate(context, token);
+    }
+
+    @Override
+    public NjwhdResponseCache.Entry getCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account) {
+        return NjwhdResponseCache.get(context, endpoint, account);
+    }
+
+    @Override
+    public void putCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account, String body,
+            String etag, String lastModified) {
+        NjwhdResponseCache.put(context, endpoint, account, body, etag, lastModified);
+    }
+
+    @Override
+    public void touchCachedResponse(NjwhdResponseCache.Endpoint endpoint, String account) {
+        NjwhdResponseCache.touch(context, endpoint, account);
+    }
+}
@@ -35,10 +35,7 @@ public class PrivacyPolicyManager {
      * @param callback 加载完成回调
      */
     public static void loadUserAgreementContent(PrivacyPolicyCallback callback) {
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(10, java.util.concurrent.TimeUnit.SECONDS)
-                .readTimeout(10, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
+        OkHttpClient client = HttpClients.shortTimeout();
         
         Request request = new Request.Builder()
                 .url(USER_AGREEMENT_API_URL)
@@ -94,10 +91,7 @@ public class PrivacyPolicyManager {
      * @param callback 加载完成回调
      */
     public static void loadPrivacyPolicyContent(PrivacyPolicyCallback callback) {
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(10, java.util.concurrent.TimeUnit.SECONDS)
-                .readTimeout(10, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
+        OkHttpClient client = HttpClients.shortTimeout();
         
         Request request = new Request.Builder()
                 .url(PRIVACY_POLICY_API_URL)
@@ -0,0 +1,156 @@
+package cn.pylin.xykcb;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 课表格子显示内容（{@link WeekRenderModel}）的后台构建与缓存
+ * 数据或屏幕方向变化时整体重建：先构建当前显示的周并通知界面，其余周次按与当前周的距离依次在后台构建；
+ * 切换周次时可预取相邻周次
+ */
+final class RenderModelStore {
+    interface Listener {
+        /** 重建后当前显示周的内容已准备好，在主线程回调 */
+        void onRenderModelsReady();
+    }
+
+    // 所有课表共用一个低优先级后台线程
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "RenderModelStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    private volatile Generation current;
+
+    /**
+     * 一次重建所用的输入和构建结果，重建时整体替换，旧的后台任务发现自己已过期后停止
+     */
+    private static final class Generation {
+        final ScheduleIndex index;
+        final Map<String, Integer> colorIndexes;
+        final boolean landscape;
+        // 只包含一周课程的部分课表，只构建这一周，不预取其他周次
+        final boolean partial;
+        final Map<Integer, WeekRenderModel> models = new ConcurrentHashMap<>();
+
+        Generation(ScheduleIndex index, Map<String, Integer> colorIndexes, boolean landscape, boolean partial) {
+            this.index = index;
+            this.colorIndexes = colorIndexes;
+            this.landscape = landscape;
+            this.partial = partial;
+        }
+
+        WeekRenderModel get(int week) {
+            WeekRenderModel model = models.get(week);
+            if (model == null) {
+                model = WeekRenderModel.build(index, week, colorIndexes, landscape);
+                models.put(week, model);
+            }
+            return model;
+        }
+    }
+
+    RenderModelStore(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 丢弃已构建的内容并在后台重新构建
+     * @param colorIndexes 课程颜色，会复制一份供后台线程使用
+     * @param priorityWeek 优先构建的周次（当前显示的周）
+     */
+    void rebuild(ScheduleIndex index, Map<String, Integer> colorIndexes, boolean landscape, int priorityWeek) {
+        Generation generation = new Generation(index,
+                Collections.unmodifiableMap(new HashMap<>(colorIndexes)), landscape, false);
+        current = generation;
+        executor.execute(() -> buildAll(generation, priorityWeek));
+    }
+
+    /**
+     * 用只包含一周课程的部分课表在当前线程构建这一周，供启动时绘制第一帧
+     * 完整课表到达后调用 {@link #rebuild} 整体替换
+     */
+    void rebuildPartial(ScheduleIndex index, Map<String, Integer> colorIndexes, boolean landscape, int week) {
+        Generation generation = new Generation(index,
+                Collections.unmodifiableMap(new HashMap<>(colorIndexes)), landscape, true);
+        generation.get(week);
+        current = generation;
+    }
+
+    /**
+     * 直接使用已有的一周内容（启动时从缓存恢复的格子），其他周次按 index 构建
+     */
+    void seed(ScheduleIndex index, Map<String, Integer> colorIndexes, WeekRenderModel model) {
+        Generation generation = new Generation(index,
+                Collections.unmodifiableMap(new HashMap<>(colorIndexes)), model.isLandscape(), true);
+        generation.models.put(model.getWeek(), model);
+        current = generation;
+    }
+
+    /**
+     * 获取某周的显示内容，后台尚未构建到该周时在当前线程直接构建
+     */
+    WeekRenderModel get(int week) {
+        return current.get(week);
+    }
+
+    /**
+     * 在后台提前构建指定周次，已构建的周次直接跳过
+     */
+    void prefetch(int... weeks) {
+        Generation generation = current;
+        if (generation.partial) {
+            return;
+        }
+        executor.execute(() -> {
+            for (int week : weeks) {
+                if (current != generation) {
+                    return;
+                }
+                if (week >= 1) {
+                    generation.get(week);
+                }
+            }
+        });
+    }
+
+    private void buildAll(Generation generation, int priorityWeek) {
+        generation.get(priorityWeek);
+        mainHandler.post(() -> {
+            if (current == generation) {
+                listener.onRenderModelsReady();
+            }
+        });
+
+        // 由近及远构建其余周次，最后构建全部周次视图
+        int maxWeek = generation.index.getMaxWeek();
+        int maxDistance = Math.max(maxWeek, priorityWeek);
+        for (int distance = 1; distance <= maxDistance; distance++) {
+            for (int week : new int[]{priorityWeek + distance, priorityWeek - distance}) {
+                if (current != generation) {
+                    return;
+                }
+                if (week >= 1 && week <= maxWeek) {
+                    generation.get(week);
+                }
+            }
+        }
+        if (current == generation) {
+            generation.get(ScheduleIndex.ALL_WEEKS);
+        }
+    }
+}
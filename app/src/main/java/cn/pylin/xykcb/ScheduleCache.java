@@ -0,0 +1,257 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 进程内共享的课表缓存
+ * 缓存解析后的标准课程、合并后的课程及其索引，以内容版本号为键：
+ * 课程数据（CourseList）或自定义课程写入时递增对应版本号，下次读取时才重新解析
+ *
+ * 同时作为界面、小组件和通知共用的课表状态：写入方发布新快照后，
+ * 通过 {@link Listener} 在主线程把快照推送给订阅者，订阅者不再自行读取配置
+ */
+public final class ScheduleCache {
+    private static final String TAG = "ScheduleCache";
+
+    private static final AtomicLong courseListVersion = new AtomicLong(1);
+    private static final AtomicLong customCourseVersion = new AtomicLong(1);
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 读取方不加锁，未命中时按版本号比较后安装；发布新快照（写入方）之间用类锁串行
+    private static final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private ScheduleCache() {
+    }
+
+    /**
+     * 课表变化的订阅者，回调在主线程执行
+     */
+    public interface Listener {
+        /**
+         * 发布了新快照，或学期周次发生变化（快照内容不变）
+         */
+        void onScheduleChanged(Snapshot snapshot);
+    }
+
+    /**
+     * 某一版本的课表数据，所有列表均不可修改
+     */
+    public static final class Snapshot {
+        private final long courseListVersion;
+        private final long customCourseVersion;
+        private final List<List<Course>> standardCourses;
+        private final List<List<Course>> mergedCourses;
+        private final ScheduleIndex index;
+
+        Snapshot(long courseListVersion, long customCourseVersion,
+                 List<List<Course>> standardCourses, List<List<Course>> mergedCourses) {
+            this.courseListVersion = courseListVersion;
+            this.customCourseVersion = customCourseVersion;
+            this.standardCourses = standardCourses;
+            this.mergedCourses = mergedCourses;
+            this.index = new ScheduleIndex(mergedCourses);
+        }
+
+        public List<List<Course>> getStandardCourses() { return standardCourses; }
+        public List<List<Course>> getMergedCourses() { return mergedCourses; }
+        public ScheduleIndex getIndex() { return index; }
+
+        boolean isCurrent() {
+            return courseListVersion == ScheduleCache.courseListVersion.get()
+                    && customCourseVersion == ScheduleCache.customCourseVersion.get();
+        }
+    }
+
+    /**
+     * 获取当前版本的课表，版本未变化时直接返回缓存
+     * 未命中时在调用线程读取并解析，不持有锁，不阻塞其他读取方；只读取不会通知订阅者
+     */
+    public static Snapshot get(Context context) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.isCurrent()) {
+            hitCount.incrementAndGet();
+            return current;
+        }
+        missCount.incrementAndGet();
+
+        // 先读取版本号再读数据，读取期间若有写入，版本号不再是当前值，不会安装这次的结果
+        long listVersion = courseListVersion.get();
+        long customVersion = customCourseVersion.get();
+
+        List<List<Course>> standardCourses;
+        if (current != null && current.courseListVersion == listVersion) {
+            // 只有自定义课程变化时复用已解析的标准课程
+            standardCourses = current.standardCourses;
+        } else {
+            standardCourses = freeze(CourseDataManager.readCourseData(context));
+        }
+        List<List<Course>> mergedCourses = freeze(CourseDataManager.mergeCourses(
+                standardCourses, CustomCourseManager.getCustomCoursesAsCourseList(context)));
+        Snapshot loaded = new Snapshot(listVersion, customVersion, standardCourses, mergedCourses);
+
+        while (true) {
+            Snapshot installed = snapshot.get();
+            if (installed != null && installed.isCurrent()) {
+                // 其他线程已加载或发布了当前版本
+                return installed;
+            }
+            if (!loaded.isCurrent()) {
+                // 读取期间有写入，这次的结果只交给调用方，下次读取时重新加载
+                return loaded;
+            }
+            if (snapshot.compareAndSet(installed, loaded)) {
+                Log.d(TAG, "课表缓存未命中，已重新加载：" + getStats());
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * 如果传入的列表正是当前缓存的合并课程，直接复用缓存的索引
+     */
+    public static ScheduleIndex getIndex(List<List<Course>> mergedCourses) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.mergedCourses == mergedCourses) {
+            hitCount.incrementAndGet();
+            return current.index;
+        }
+        missCount.incrementAndGet();
+        return new ScheduleIndex(mergedCourses);
+    }
+
+    /**
+     * 如果传入的列表正是当前缓存的标准课程，返回缓存的合并结果，否则返回 null
+     */
+    static List<List<Course>> getMergedIfCached(List<List<Course>> standardCourses) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.isCurrent() && current.standardCourses == standardCourses) {
+            hitCount.incrementAndGet();
+            return current.mergedCourses;
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 课程数据（CourseList）已写入
+     */
+    public static void invalidateCourseList() {
+        courseListVersion.incrementAndGet();
+    }
+
+    /**
+     * 课程数据已写入，且调用方已经解析出新的标准课程：直接作为新版本发布，无需再次读取解析
+     */
+    static Snapshot publishCourseList(Context context, List<List<Course>> standardCourses) {
+        synchronized (ScheduleCache.class) {
+            long listVersion = courseListVersion.incrementAndGet();
+            long customVersion = customCourseVersion.get();
+            List<List<Course>> frozenCourses = freeze(standardCourses);
+            List<List<Course>> mergedCourses = freeze(CourseDataManager.mergeCourses(
+                    frozenCourses, CustomCourseManager.getCustomCoursesAsCourseList(context)));
+            Snapshot current = new Snapshot(listVersion, customVersion, frozenCourses, mergedCourses);
+            snapshot.set(current);
+            dispatch(current);
+            return current;
+        }
+    }
+
+    /**
+     * 自定义课程已写入：复用已解析的标准课程，只重新合并自定义课程并发布新版本
+     * 尚未加载过课表时只递增版本号，等第一次读取时再加载
+     */
+    static void publishCustomCourses(Context context) {
+        synchronized (ScheduleCache.class) {
+            long customVersion = customCourseVersion.incrementAndGet();
+            Snapshot previous = snapshot.get();
+            if (previous == null || previous.courseListVersion != courseListVersion.get()) {
+                return;
+            }
+            List<List<Course>> mergedCourses = freeze(CourseDataManager.mergeCourses(
+                    previous.standardCourses, CustomCourseManager.getCustomCoursesAsCourseList(context)));
+            Snapshot current = new Snapshot(previous.courseListVersion, customVersion,
+                    previous.standardCourses, mergedCourses);
+            snapshot.set(current);
+            dispatch(current);
+        }
+    }
+
+    /**
+     * 学期周次已变化：课表内容不变，把当前快照重新推送给订阅者以便切换到新的周次
+     */
+    static void notifyWeekChanged() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            dispatch(current);
+        }
+    }
+
+    /**
+     * 当前已加载的快照，尚未加载时为 null；不读取配置，可在主线程调用
+     */
+    public static Snapshot peek() {
+        Snapshot current = snapshot.get();
+        return current != null && current.isCurrent() ? current : null;
+    }
+
+    /**
+     * 订阅课表变化，只推送订阅之后发布的快照，需要当前数据时先调用 {@link #peek()}
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // 在主线程按发布顺序推送，回调时已有更新的快照则跳过旧的
+    private static void dispatch(Snapshot published) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        mainHandler.post(() -> {
+            if (snapshot.get() != published) {
+                return;
+            }
+            for (Listener listener : listeners) {
+                listener.onScheduleChanged(published);
+            }
+        });
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static String getStats() {
+        return "hit=" + hitCount.get() + ", miss=" + missCount.get()
+                + ", version=" + courseListVersion.get() + "/" + customCourseVersion.get();
+    }
+
+    private static List<List<Course>> freeze(List<List<Course>> weeklyCourses) {
+        List<List<Course>> frozen = new ArrayList<>(weeklyCourses.size());
+        for (List<Course> dayCourses : weeklyCourses) {
+            frozen.add(Collections.unmodifiableList(dayCourses));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+}
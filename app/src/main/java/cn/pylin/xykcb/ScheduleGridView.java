@@ -0,0 +1,540 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.os.Trace;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.style.AbsoluteSizeSpan;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+import java.util.List;
+
+/**
+ * 在一个 View 中绘制整张课表：标题行、节次列、课程背景、重叠角标和文字
+ * 取代原先 RecyclerView 中 6 行共 48 个 TextView 的实现，布局与原来保持一致；
+ * 显示内容由 {@link CourseAdapter} 提供，每个格子的 StaticLayout 只在内容或尺寸变化时重建；
+ * 左上角周次和每个格子作为虚拟视图提供给 TalkBack 等无障碍服务，朗读格子文字并可点击；
+ * 每个实例显示周次翻页中的一页
+ */
+public class ScheduleGridView extends View {
+    public interface OnCellClickListener {
+        /** 点击左上角的周次 */
+        void onWeekHeaderClick();
+
+        /** 点击有课程的格子 */
+        void onCourseCellClick(CellRenderModel cell, int weekday, int slot);
+    }
+
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+    private static final float HEADER_ROW_HEIGHT_DP = 50f;
+    // 与原课程行布局中节次列和星期列的权重一致
+    private static final float TIME_COLUMN_WEIGHT = 1.1f;
+    private static final float DAY_COLUMNS_WEIGHT = 8.8f;
+    private static final String[] TIME_NAMES_LANDSCAPE = {"第一大节", "第二大节", "第三大节", "第四大节", "第五大节"};
+    private static final int WEEK_LABEL_BACKGROUND_COLOR = 0xFF566573;
+    private static final String[] TIME_NAMES_PORTRAIT = {"第\n一\n大\n节", "第\n二\n大\n节", "第\n三\n大\n节", "第\n四\n大\n节", "第\n五\n大\n节"};
+    // 无障碍虚拟视图：左上角周次为0，格子为格子下标+1
+    private static final int WEEK_HEADER_ID = 0;
+
+    private final TextPaint cellTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint dayHeaderPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint timeHeaderPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint weekLabelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint weekLabelBackgroundPaint;
+    private final Paint badgePaint;
+    private final Paint badgeShadowPaint;
+    // 角标几何只与尺寸有关，构造时以格子右上角为原点生成一次，绘制时平移到对应格子
+    private final Path badgePath = new Path();
+    private final Path badgeShadowPath = new Path();
+    private final RectF rect = new RectF();
+    private final GridAccessibilityHelper accessibilityHelper;
+
+    private final float headerRowHeight;
+    private final float timeColumnMargin;
+    private final float cellMargin;
+    private final float cellPadding;
+    private final float cellCornerRadius;
+    private final float weekLabelCornerRadius;
+    private final float badgeSize;
+    private final int weekNumberTextSize;
+    private final int weekUnitTextSize;
+    private final int touchSlop;
+
+    private Paint[] cellPaints = new Paint[0];
+    private OnCellClickListener onCellClickListener;
+
+    // 显示内容：下标为 (节次-1)*7+星期-1
+    private final CellRenderModel[] cells = new CellRenderModel[DAYS * SLOTS];
+    private final StaticLayout[] cellLayouts = new StaticLayout[DAYS * SLOTS];
+    private String weekLabel = "";
+    private final String[] dayHeaders = new String[DAYS];
+    private StaticLayout weekLabelLayout;
+    private final StaticLayout[] dayHeaderLayouts = new StaticLayout[DAYS];
+    private final StaticLayout[] timeHeaderLayouts = new StaticLayout[SLOTS];
+    private boolean landscape;
+    private WeekRenderModel weekModel;
+
+    // 布局尺寸，在 onSizeChanged 中计算
+    private float timeColumnWidth;
+    private float dayColumnWidth;
+    private float rowHeight;
+
+    private float downX;
+    private float downY;
+
+    public ScheduleGridView(Context context) {
+        this(context, null);
+    }
+
+    public ScheduleGridView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ScheduleGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        headerRowHeight = dp(HEADER_ROW_HEIGHT_DP);
+        timeColumnMargin = dp(2);
+        cellMargin = dp(1);
+        // 原实现中课程格子的内边距和圆角为像素值
+        cellPadding = 5;
+        cellCornerRadius = 5;
+        weekLabelCornerRadius = 10;
+        badgeSize = dp(16);
+        weekNumberTextSize = (int) sp(22);
+        weekUnitTextSize = (int) sp(12);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        int textColor = ContextCompat.getColor(context, R.color.course_text_color);
+        cellTextPaint.setColor(textColor);
+        cellTextPaint.setTextSize(sp(12));
+        dayHeaderPaint.setColor(textColor);
+        dayHeaderPaint.setTextSize(sp(14));
+        timeHeaderPaint.setColor(ContextCompat.getColor(context, R.color.info_text_color));
+        timeHeaderPaint.setTextSize(sp(14));
+        weekLabelPaint.setColor(Color.WHITE);
+        weekLabelPaint.setTextSize(weekUnitTextSize);
+        weekLabelBackgroundPaint = CoursePaintCache.getFillPaint(WEEK_LABEL_BACKGROUND_COLOR);
+        badgePaint = CoursePaintCache.getFillPaint(ContextCompat.getColor(context, R.color.red));
+        badgeShadowPaint = CoursePaintCache.getFillPaint(CoursePaintCache.BADGE_SHADOW_COLOR);
+        badgePath.moveTo(-badgeSize, 0);
+        badgePath.lineTo(0, 0);
+        badgePath.lineTo(0, badgeSize);
+        badgePath.close();
+        badgePath.offset(1, 1, badgeShadowPath); // 阴影稍微偏移
+
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = CellRenderModel.EMPTY;
+        }
+        for (int i = 0; i < DAYS; i++) {
+            dayHeaders[i] = "";
+        }
+        landscape = context.getResources().getConfiguration().orientation
+                == android.content.res.Configuration.ORIENTATION_LANDSCAPE;
+
+        accessibilityHelper = new GridAccessibilityHelper();
+        ViewCompat.setAccessibilityDelegate(this, accessibilityHelper);
+    }
+
+    public void setColorPalette(int[] colorPalette) {
+        cellPaints = new Paint[colorPalette.length];
+        for (int i = 0; i < colorPalette.length; i++) {
+            cellPaints[i] = CoursePaintCache.getFillPaint(colorPalette[i]);
+        }
+        invalidate();
+    }
+
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        this.onCellClickListener = listener;
+    }
+
+    /**
+     * 设置标题行
+     * @param weekLabel 周次文本（数字或"N"）
+     * @param dayHeaders 7天的标题，可包含换行
+     */
+    public void setHeader(String weekLabel, String[] dayHeaders) {
+        boolean changed = false;
+        if (!this.weekLabel.equals(weekLabel)) {
+            this.weekLabel = weekLabel;
+            weekLabelLayout = null;
+            changed = true;
+        }
+        for (int i = 0; i < DAYS; i++) {
+            if (!this.dayHeaders[i].equals(dayHeaders[i])) {
+                this.dayHeaders[i] = dayHeaders[i];
+                dayHeaderLayouts[i] = null;
+                changed = true;
+            }
+        }
+        // 标题行未变化（如数据更新但学期日期不变）时不重绘
+        if (changed) {
+            invalidate();
+            accessibilityHelper.invalidateRoot();
+        }
+    }
+
+    /**
+     * 显示一周的课程格子，与当前内容逐格比较，只重建外观变化的格子的文字布局，没有变化时不重绘
+     */
+    public void setWeekModel(WeekRenderModel model) {
+        if (model == weekModel) {
+            return;
+        }
+        int[] changedDays = diffCells(model);
+        boolean changed = false;
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            int dayMask = changedDays[slot - 1];
+            for (int day = 1; day <= DAYS; day++) {
+                int index = cellIndex(day, slot);
+                if ((dayMask & (1 << (day - 1))) != 0) {
+                    cellLayouts[index] = null;
+                }
+                // 外观相同（如启动时缓存的格子换成实时数据）只替换课程详情，不重建文字布局
+                cells[index] = model.getCell(day, slot);
+            }
+            changed |= dayMask != 0;
+        }
+        if (landscape != model.isLandscape()) {
+            landscape = model.isLandscape();
+            clearTimeHeaderLayouts();
+            changed = true;
+        }
+        weekModel = model;
+        if (changed) {
+            invalidate();
+        }
+        // 课程详情变化也会改变格子能否点击
+        accessibilityHelper.invalidateRoot();
+    }
+
+    // 与当前显示的格子比较，返回每一节中外观变化的星期位图（第 day-1 位表示星期 day）
+    private int[] diffCells(WeekRenderModel model) {
+        // 文本格式随屏幕方向变化，方向不同时全部格子都需要重建
+        boolean orientationChanged = weekModel == null || weekModel.isLandscape() != model.isLandscape();
+        int[] changedDays = new int[SLOTS];
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            for (int day = 1; day <= DAYS; day++) {
+                if (orientationChanged || !model.getCell(day, slot).hasSameAppearance(cells[cellIndex(day, slot)])) {
+                    changedDays[slot - 1] |= 1 << (day - 1);
+                }
+            }
+        }
+        return changedDays;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float contentWidth = w - getPaddingLeft() - getPaddingRight();
+        float contentHeight = h - getPaddingTop() - getPaddingBottom();
+        float totalWeight = TIME_COLUMN_WEIGHT + DAY_COLUMNS_WEIGHT;
+        timeColumnWidth = contentWidth * TIME_COLUMN_WEIGHT / totalWeight;
+        dayColumnWidth = contentWidth * DAY_COLUMNS_WEIGHT / totalWeight / DAYS;
+        rowHeight = Math.max(0, (contentHeight - headerRowHeight) / SLOTS);
+
+        // 尺寸变化后所有文字布局都需要重建
+        weekLabelLayout = null;
+        for (int i = 0; i < DAYS; i++) {
+            dayHeaderLayouts[i] = null;
+        }
+        for (int i = 0; i < cellLayouts.length; i++) {
+            cellLayouts[i] = null;
+        }
+        clearTimeHeaderLayouts();
+        accessibilityHelper.invalidateRoot();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (rowHeight <= 0) {
+            return;
+        }
+        // 包含变化格子的文字布局重建
+        Trace.beginSection("xykcb:drawScheduleGrid");
+        try {
+            canvas.save();
+            canvas.translate(getPaddingLeft(), getPaddingTop());
+            drawHeaderRow(canvas);
+            for (int slot = 1; slot <= SLOTS; slot++) {
+                float top = headerRowHeight + (slot - 1) * rowHeight;
+                drawTimeHeader(canvas, slot, top);
+                for (int day = 1; day <= DAYS; day++) {
+                    drawCell(canvas, day, slot, getDayLeft(day), top);
+                }
+            }
+            canvas.restore();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void drawHeaderRow(Canvas canvas) {
+        // 左上角周次
+        rect.set(timeColumnMargin, timeColumnMargin,
+                timeColumnWidth - timeColumnMargin, headerRowHeight - timeColumnMargin);
+        canvas.drawRoundRect(rect, weekLabelCornerRadius, weekLabelCornerRadius, weekLabelBackgroundPaint);
+        if (weekLabelLayout == null) {
+            SpannableString text = new SpannableString(weekLabel + "周");
+            text.setSpan(new AbsoluteSizeSpan(weekNumberTextSize), 0, weekLabel.length(),
+                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            weekLabelLayout = buildLayout(text, weekLabelPaint, rect.width());
+        }
+        drawCentered(canvas, weekLabelLayout, rect);
+
+        for (int day = 1; day <= DAYS; day++) {
+            if (dayHeaderLayouts[day - 1] == null) {
+                dayHeaderLayouts[day - 1] = buildLayout(dayHeaders[day - 1], dayHeaderPaint, dayColumnWidth - 2 * cellMargin);
+            }
+            float left = getDayLeft(day);
+            rect.set(left + cellMargin, cellMargin, left + dayColumnWidth - cellMargin, headerRowHeight - cellMargin);
+            drawCentered(canvas, dayHeaderLayouts[day - 1], rect);
+        }
+    }
+
+    private void drawTimeHeader(Canvas canvas, int slot, float top) {
+        rect.set(timeColumnMargin, top + timeColumnMargin,
+                timeColumnWidth - timeColumnMargin, top + rowHeight - timeColumnMargin);
+        if (timeHeaderLayouts[slot - 1] == null) {
+            String[] names = landscape ? TIME_NAMES_LANDSCAPE : TIME_NAMES_PORTRAIT;
+            timeHeaderLayouts[slot - 1] = buildLayout(names[slot - 1], timeHeaderPaint, rect.width());
+        }
+        drawCentered(canvas, timeHeaderLayouts[slot - 1], rect);
+    }
+
+    private void drawCell(Canvas canvas, int day, int slot, float left, float top) {
+        int index = cellIndex(day, slot);
+        CellRenderModel cell = cells[index];
+        if (!cell.hasCourse()) {
+            return;
+        }
+
+        rect.set(left + cellMargin, top + cellMargin, left + dayColumnWidth - cellMargin, top + rowHeight - cellMargin);
+        int colorIndex = cell.getColorIndex();
+        Paint cellPaint = colorIndex >= 0 && colorIndex < cellPaints.length
+                ? cellPaints[colorIndex] : CoursePaintCache.getFillPaint(Color.LTGRAY);
+        canvas.drawRoundRect(rect, cellCornerRadius, cellCornerRadius, cellPaint);
+
+        if (cellLayouts[index] == null) {
+            cellLayouts[index] = buildLayout(cell.getText(), cellTextPaint, rect.width() - 2 * cellPadding);
+        }
+        canvas.save();
+        // 文字超出格子时与 TextView 一样裁剪
+        canvas.clipRect(rect);
+        rect.inset(cellPadding, cellPadding);
+        drawCentered(canvas, cellLayouts[index], rect);
+        canvas.restore();
+
+        if (cell.getOverlapCount() > 1) {
+            canvas.save();
+            canvas.translate(left + dayColumnWidth - cellMargin, top + cellMargin);
+            canvas.drawPath(badgeShadowPath, badgeShadowPaint);
+            canvas.drawPath(badgePath, badgePaint);
+            canvas.restore();
+        }
+    }
+
+    // 在矩形中水平、垂直居中绘制
+    private void drawCentered(Canvas canvas, StaticLayout layout, RectF bounds) {
+        canvas.save();
+        canvas.translate(bounds.left + (bounds.width() - layout.getWidth()) / 2f,
+                bounds.top + (bounds.height() - layout.getHeight()) / 2f);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    private StaticLayout buildLayout(CharSequence text, TextPaint paint, float width) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, Math.max(1, (int) width))
+                .setAlignment(Layout.Alignment.ALIGN_CENTER)
+                .build();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (Math.abs(event.getX() - downX) < touchSlop && Math.abs(event.getY() - downY) < touchSlop) {
+                    performClick();
+                    performVirtualViewClick(findVirtualViewAt(
+                            event.getX() - getPaddingLeft(), event.getY() - getPaddingTop()));
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return accessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return accessibilityHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        accessibilityHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
+    // 内容坐标处的虚拟视图（左上角周次或格子），点击与无障碍服务共用；不在其中时返回 INVALID_ID
+    private int findVirtualViewAt(float x, float y) {
+        if (rowHeight <= 0) {
+            return ExploreByTouchHelper.INVALID_ID;
+        }
+        if (y < headerRowHeight) {
+            return x < timeColumnWidth ? WEEK_HEADER_ID : ExploreByTouchHelper.INVALID_ID;
+        }
+        if (x < timeColumnWidth) {
+            return ExploreByTouchHelper.INVALID_ID;
+        }
+        int day = (int) ((x - timeColumnWidth) / dayColumnWidth) + 1;
+        int slot = (int) ((y - headerRowHeight) / rowHeight) + 1;
+        if (day < 1 || day > DAYS || slot < 1 || slot > SLOTS) {
+            return ExploreByTouchHelper.INVALID_ID;
+        }
+        return cellIndex(day, slot) + 1;
+    }
+
+    // 启动时从缓存恢复的格子没有课程详情，数据加载后才能点击
+    private boolean isVirtualViewClickable(int virtualViewId) {
+        return virtualViewId == WEEK_HEADER_ID
+                || !cells[virtualViewId - 1].getCourses().isEmpty();
+    }
+
+    // 点击虚拟视图，返回是否有响应
+    private boolean performVirtualViewClick(int virtualViewId) {
+        if (onCellClickListener == null || virtualViewId == ExploreByTouchHelper.INVALID_ID
+                || !isVirtualViewClickable(virtualViewId)) {
+            return false;
+        }
+        if (virtualViewId == WEEK_HEADER_ID) {
+            onCellClickListener.onWeekHeaderClick();
+        } else {
+            int index = virtualViewId - 1;
+            onCellClickListener.onCourseCellClick(cells[index], index % DAYS + 1, index / DAYS + 1);
+        }
+        return true;
+    }
+
+    /**
+     * 把左上角周次和35个格子提供给无障碍服务：朗读周次或"星期 日期 节次 课程"，有课程的格子可点击
+     */
+    private class GridAccessibilityHelper extends ExploreByTouchHelper {
+        private final Rect bounds = new Rect();
+
+        GridAccessibilityHelper() {
+            super(ScheduleGridView.this);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int virtualViewId = findVirtualViewAt(x - getPaddingLeft(), y - getPaddingTop());
+            return virtualViewId != ExploreByTouchHelper.INVALID_ID ? virtualViewId : HOST_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            if (rowHeight <= 0) {
+                return;
+            }
+            virtualViewIds.add(WEEK_HEADER_ID);
+            for (int i = 0; i < cells.length; i++) {
+                virtualViewIds.add(i + 1);
+            }
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, @NonNull AccessibilityNodeInfoCompat node) {
+            if (virtualViewId == WEEK_HEADER_ID) {
+                node.setContentDescription("第" + weekLabel + "周，切换周次");
+                bounds.set(0, 0, (int) timeColumnWidth, (int) headerRowHeight);
+            } else {
+                int index = virtualViewId - 1;
+                int day = index % DAYS + 1;
+                int slot = index / DAYS + 1;
+                CellRenderModel cell = cells[index];
+                String text = cell.hasCourse() ? cell.getText() : "无课";
+                node.setContentDescription(dayHeaders[day - 1].replace('\n', ' ') + " "
+                        + TIME_NAMES_LANDSCAPE[slot - 1] + "，" + text.replace('\n', ' '));
+                float left = getDayLeft(day);
+                float top = headerRowHeight + (slot - 1) * rowHeight;
+                bounds.set((int) left, (int) top, (int) (left + dayColumnWidth), (int) (top + rowHeight));
+            }
+            bounds.offset(getPaddingLeft(), getPaddingTop());
+            node.setBoundsInParent(bounds);
+            if (isVirtualViewClickable(virtualViewId)) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, @Nullable Bundle arguments) {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && performVirtualViewClick(virtualViewId)) {
+                sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private float getDayLeft(int day) {
+        return timeColumnWidth + (day - 1) * dayColumnWidth;
+    }
+
+    private void clearTimeHeaderLayouts() {
+        for (int i = 0; i < SLOTS; i++) {
+            timeHeaderLayouts[i] = null;
+        }
+    }
+
+    private static int cellIndex(int weekday, int slot) {
+        return (slot - 1) * DAYS + weekday - 1;
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+
+    private float sp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value, getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,212 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 课表数据仓库：本地课表立即可用，网络同步同一时间最多进行一次
+ * 同步进行中再次请求同一账号时共用这次同步的结果；距离上次成功同步不足最小间隔时不再请求网络。
+ * 同步得到的课程列表只在这里写入 CourseList，避免多次同步交替写入
+ *
+ * 状态：CACHED 只有本地课表，REFRESHING 正在同步，FRESH 最近一次同步成功，FAILED 最近一次同步失败
+ */
+final class ScheduleRepository {
+    private static final String TAG = "ScheduleRepository";
+    private static final String PREFS_NAME = "CourseListInfo";
+    private static final String PREFS_COURSE_LIST = "CourseList";
+    private static final String KEY_REFRESHED_AT = "refreshedAt";
+    private static final String KEY_REFRESHED_ACCOUNT = "refreshedAccount";
+    // CourseList 所属账号和修订号，组成二进制快照的标记
+    private static final String KEY_COURSE_LIST_ACCOUNT = "courseListAccount";
+    private static final String KEY_COURSE_LIST_REVISION = "courseListRevision";
+    // 两次自动同步的最小间隔，选课期间教务系统压力大时避免每次启动都请求
+    private static final long MIN_REVALIDATE_INTERVAL_MILLIS = 15 * 60 * 1000L;
+
+    enum State {
+        CACHED, REFRESHING, FRESH, FAILED
+    }
+
+    /**
+     * 一次同步的结果
+     */
+    static final class Result {
+        // 同步后的课表（不含自定义课程）
+        final List<List<Course>> courses;
+        final ScheduleDiff diff;
+        // 是否写入了新的课程列表
+        final boolean saved;
+
+        Result(List<List<Course>> courses, ScheduleDiff diff, boolean saved) {
+            this.courses = courses;
+            this.diff = diff;
+            this.saved = saved;
+        }
+    }
+
+    /**
+     * 进行中的一次同步，多个请求方共用；所有请求方都释放后才取消
+     */
+    static final class Refresh {
+        private final String account;
+        private final HnitLoginPipeline pipeline;
+        private CompletableFuture<Result> result;
+        private int holders = 1;
+
+        private Refresh(String account, HnitLoginPipeline pipeline) {
+            this.account = account;
+            this.pipeline = pipeline;
+        }
+
+        HnitLoginPipeline getPipeline() {
+            return pipeline;
+        }
+
+        CompletableFuture<Result> getResult() {
+            return result;
+        }
+    }
+
+    private static volatile State state = State.CACHED;
+    private static Refresh active;
+
+    private ScheduleRepository() {
+    }
+
+    static State getState() {
+        return state;
+    }
+
+    /**
+     * 当前 CourseList 的标记：所属账号和修订号，每次写入课程列表或更换账号时改变
+     * 二进制快照只在标记一致时使用，避免读到其他账号或旧版本的课程
+     */
+    static String getCourseListStamp(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return stamp(prefs.getString(KEY_COURSE_LIST_ACCOUNT, ""), prefs.getLong(KEY_COURSE_LIST_REVISION, 0));
+    }
+
+    private static String stamp(String account, long revision) {
+        return account + "#" + revision;
+    }
+
+    /**
+     * 距离该账号上次成功同步是否已超过最小间隔
+     */
+    static boolean needsRefresh(Context context, String account) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!account.equals(prefs.getString(KEY_REFRESHED_ACCOUNT, ""))) {
+            return true;
+        }
+        long age = System.currentTimeMillis() - prefs.getLong(KEY_REFRESHED_AT, 0);
+        return age < 0 || age >= MIN_REVALIDATE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * 同步课表；同一账号的同步正在进行时直接返回它，其他账号的同步会被取消
+     * 返回的同步不再需要时调用 {@link #release(Refresh)}
+     * @param starter 创建并启动登录请求，只在需要新的同步时调用
+     */
+    static synchronized Refresh refresh(Context context, String account, Supplier<HnitLoginPipeline> starter) {
+        if (active != null && !active.result.isDone()) {
+            if (active.account.equals(account)) {
+                active.holders++;
+                return active;
+            }
+            // 切换账号后旧账号的结果不再写入
+            active.pipeline.cancel();
+        }
+        Context appContext = context.getApplicationContext();
+        Refresh refresh = new Refresh(account, starter.get());
+        active = refresh;
+        setState(State.REFRESHING);
+
+        CompletableFuture<Void> weekSaved = refresh.pipeline.getTeachingWeek().handle((week, error) -> {
+            if (week != null) {
+                // 根据当前周次推算学期第1周周一
+                SemesterCalendar.saveCurrentWeek(appContext, week);
+            }
+            return null;
+        });
+        // 课程列表在保存当前周次之后处理，界面按新的学期日历选中周次；周次获取失败时仍然保存课程
+        refresh.result = refresh.pipeline.getCurriculum()
+                .thenCombine(weekSaved, (courseList, ignored) -> courseList)
+                .thenApply(courseList -> save(appContext, refresh, courseList));
+        refresh.result.whenComplete((result, error) -> {
+            synchronized (ScheduleRepository.class) {
+                if (active != refresh) {
+                    return;
+                }
+                if (error == null) {
+                    setState(State.FRESH);
+                } else {
+                    setState(HnitLoginPipeline.unwrap(error) instanceof CancellationException
+                            ? State.CACHED : State.FAILED);
+                }
+            }
+        });
+        return refresh;
+    }
+
+    /**
+     * 请求方不再需要同步结果，所有请求方都释放后取消尚未完成的请求
+     */
+    static synchronized void release(Refresh refresh) {
+        refresh.holders--;
+        if (refresh.holders <= 0 && !refresh.result.isDone()) {
+            refresh.pipeline.cancel();
+        }
+    }
+
+    // 与本地课表逐节比对，有变化或本地没有课表时才写入并发布
+    private static Result save(Context context, Refresh refresh, String newCourseList) {
+        List<List<Course>> weeklyCourses = CourseDataManager.parseCourseData(newCourseList);
+        synchronized (ScheduleRepository.class) {
+            if (active != refresh || refresh.pipeline.isCancelled()) {
+                throw new CancellationException("同步已被取代");
+            }
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            List<List<Course>> existingCourses = ScheduleCache.get(context).getStandardCourses();
+            ScheduleDiff diff = ScheduleDiff.compute(existingCourses, weeklyCourses);
+            boolean saved = diff.hasChanges() || prefs.getString(PREFS_COURSE_LIST, "").isEmpty();
+            boolean accountChanged = !refresh.account.equals(prefs.getString(KEY_COURSE_LIST_ACCOUNT, ""));
+            if (saved || accountChanged) {
+                // 先删除旧快照，和课程列表一起更新标记，保存后按新数据和新标记重新生成
+                ScheduleSnapshot.delete(context);
+                long revision = prefs.getLong(KEY_COURSE_LIST_REVISION, 0) + 1;
+                SharedPreferences.Editor editor = prefs.edit()
+                        .putString(KEY_COURSE_LIST_ACCOUNT, refresh.account)
+                        .putLong(KEY_COURSE_LIST_REVISION, revision);
+                if (saved) {
+                    editor.putString(PREFS_COURSE_LIST, newCourseList);
+                }
+                editor.apply();
+                weeklyCourses = saved
+                        ? ScheduleCache.publishCourseList(context, weeklyCourses).getStandardCourses()
+                        : existingCourses;
+                if (!newCourseList.isEmpty()) {
+                    ScheduleSnapshot.write(context, weeklyCourses, stamp(refresh.account, revision));
+                }
+            } else {
+                weeklyCourses = existingCourses;
+            }
+            prefs.edit()
+                    .putLong(KEY_REFRESHED_AT, System.currentTimeMillis())
+                    .putString(KEY_REFRESHED_ACCOUNT, refresh.account)
+                    .apply();
+            return new Result(weeklyCourses, diff, saved);
+        }
+    }
+
+    private static void setState(State newState) {
+        if (state != newState) {
+            Log.d(TAG, "课表状态 " + state + " -> " + newState);
+            state = newState;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 已解析标准课程的二进制快照
+ * 同步成功后写入，进程只为小组件或通知启动时直接从快照恢复课程，无需加载 CourseListInfo 中的 JSON
+ *
+ * 文件格式（大端）：
+ * 魔数、格式版本、课程列表标记、字符串表（去重后的 UTF-8 字符串）、每天课程数[7]、定长课程记录
+ * 课程列表标记由账号和 CourseList 的修订号组成（见 ScheduleRepository.getCourseListStamp），
+ * 读取时与当前标记不一致的快照（其他账号或旧版本的课程）直接丢弃
+ */
+final class ScheduleSnapshot {
+    private static final String TAG = "ScheduleSnapshot";
+    private static final String FILE_NAME = "schedule.bin";
+    private static final int MAGIC = 0x584B4342; // "XKCB"
+    private static final int FORMAT_VERSION = 2;
+    private static final int DAYS = 7;
+    // 8个字符串下标 + 星期 + 起始周 + 标志位 + 周次位图 + 节次位图
+    private static final int STRING_FIELDS = 8;
+    private static final int RECORD_SIZE = STRING_FIELDS * 4 + 4 + 4 + 4 + 8 + 4;
+    // 课程记录中标志位和周次位图的偏移，只按周次筛选时不解码整条记录
+    private static final int RECORD_FLAGS_OFFSET = STRING_FIELDS * 4 + 4 + 4;
+    private static final int RECORD_WEEK_MASK_OFFSET = RECORD_FLAGS_OFFSET + 4;
+    private static final int FLAG_ALL_WEEKS = 1;
+
+    // 写入在后台线程依次执行，小组件和通知在主线程读取课程时不等待写盘
+    private static final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    // 每次删除快照加一，删除之前提交、尚未完成的写入不再覆盖文件
+    private static int generation;
+
+    private ScheduleSnapshot() {
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * 在后台原子写入快照：先写临时文件并同步到磁盘，再重命名覆盖
+     */
+    static void write(Context context, List<List<Course>> weeklyCourses, String stamp) {
+        Context appContext = context.getApplicationContext();
+        final int writeGeneration;
+        synchronized (ScheduleSnapshot.class) {
+            writeGeneration = generation;
+        }
+        writeExecutor.execute(() -> {
+            File file = getFile(appContext);
+            File tempFile = new File(file.getPath() + ".tmp");
+            try {
+                byte[] data = encode(weeklyCourses, stamp);
+                try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                    out.write(data);
+                    out.getFD().sync();
+                }
+                synchronized (ScheduleSnapshot.class) {
+                    if (writeGeneration != generation) {
+                        // 写入期间课程数据已更新，丢弃旧数据
+                        tempFile.delete();
+                        return;
+                    }
+                    if (!tempFile.renameTo(file)) {
+                        throw new IOException("重命名快照文件失败");
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "写入课表快照失败", e);
+                tempFile.delete();
+            }
+        });
+    }
+
+    /**
+     * 通过内存映射读取快照，文件不存在、损坏或标记与 stamp 不一致时返回 null
+     */
+    static List<List<Course>> read(Context context, String stamp) {
+        File file = getFile(context);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, stamp);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "读取课表快照失败，已丢弃", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 只解码指定周次有课的课程，用于启动时先显示当前周
+     * 字符串表只记录位置，跳过其他周次的课程记录，只解码用到的字符串；文件不存在、损坏或标记不一致时返回 null
+     */
+    static List<List<Course>> readWeek(Context context, int week, String stamp) {
+        File file = getFile(context);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decodeWeek(buffer, week, stamp);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "读取课表快照失败，已丢弃", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 删除快照，在写入新的课程数据前调用，避免留下与 CourseList 不一致的旧快照
+     */
+    static void delete(Context context) {
+        synchronized (ScheduleSnapshot.class) {
+            generation++;
+            getFile(context).delete();
+        }
+    }
+
+    private static byte[] encode(List<List<Course>> weeklyCourses, String stamp) throws IOException {
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        int[] dayCounts = new int[DAYS];
+        List<int[]> stringRefs = new ArrayList<>();
+        List<Course> courses = new ArrayList<>();
+
+        for (int day = 0; day < DAYS && day < weeklyCourses.size(); day++) {
+            for (Course course : weeklyCourses.get(day)) {
+                String[] fields = {
+                        course.getDate(), course.getClassTime(), course.getCourseName(),
+                        course.getLocation(), course.getTeacher(), course.getclassWeek(),
+                        course.getMaxClassTime(), course.getClassWeekDetails()
+                };
+                int[] refs = new int[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    refs[i] = intern(fields[i], strings, stringIndex);
+                }
+                stringRefs.add(refs);
+                courses.add(course);
+                dayCounts[day]++;
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        byte[] encodedStamp = stamp.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encodedStamp.length);
+        out.write(encodedStamp);
+
+        out.writeInt(strings.size());
+        for (String value : strings) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+
+        for (int count : dayCounts) {
+            out.writeInt(count);
+        }
+        for (int i = 0; i < courses.size(); i++) {
+            Course course = courses.get(i);
+            for (int ref : stringRefs.get(i)) {
+                out.writeInt(ref);
+            }
+            out.writeInt(course.getWeekday());
+            out.writeInt(course.getFirstWeek());
+            out.writeInt(course.isAllWeeks() ? FLAG_ALL_WEEKS : 0);
+            out.writeLong(course.getWeekMask());
+            out.writeInt(course.getSlotMask());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int intern(String value, List<String> strings, Map<String, Integer> stringIndex) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        return index;
+    }
+
+    // 检查魔数、格式版本和课程列表标记
+    private static void checkHeader(MappedByteBuffer buffer, String stamp) throws IOException {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            throw new IOException("快照格式不匹配");
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("快照标记长度无效");
+        }
+        byte[] encoded = new byte[length];
+        buffer.get(encoded);
+        if (!stamp.equals(new String(encoded, StandardCharsets.UTF_8))) {
+            throw new IOException("快照与当前课程列表不一致");
+        }
+    }
+
+    private static List<List<Course>> decode(MappedByteBuffer buffer, String stamp) throws IOException {
+        try {
+            checkHeader(buffer, stamp);
+
+            int stringCount = buffer.getInt();
+            if (stringCount < 0 || stringCount > buffer.remaining() / 4) {
+                throw new IOException("字符串表长度无效");
+            }
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("字符串长度无效");
+                }
+                byte[] encoded = new byte[length];
+                buffer.get(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+
+            int[] dayCounts = new int[DAYS];
+            long total = 0;
+            for (int day = 0; day < DAYS; day++) {
+                dayCounts[day] = buffer.getInt();
+                if (dayCounts[day] < 0) {
+                    throw new IOException("课程数量无效");
+                }
+                total += dayCounts[day];
+            }
+            if (total * RECORD_SIZE != buffer.remaining()) {
+                throw new IOException("课程记录长度无效");
+            }
+
+            List<List<Course>> weeklyCourses = new ArrayList<>(DAYS);
+            for (int day = 0; day < DAYS; day++) {
+                List<Course> dayCourses = new ArrayList<>(dayCounts[day]);
+                for (int i = 0; i < dayCounts[day]; i++) {
+                    dayCourses.add(readCourse(buffer, strings));
+                }
+                weeklyCourses.add(dayCourses);
+            }
+            return weeklyCourses;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("快照文件不完整", e);
+        }
+    }
+
+    private static List<List<Course>> decodeWeek(MappedByteBuffer buffer, int week, String stamp) throws IOException {
+        try {
+            checkHeader(buffer, stamp);
+
+            // 只记录每个字符串的位置和长度，用到时再解码
+            int stringCount = buffer.getInt();
+            if (stringCount < 0 || stringCount > buffer.remaining() / 4) {
+                throw new IOException("字符串表长度无效");
+            }
+            int[] stringOffsets = new int[stringCount];
+            int[] stringLengths = new int[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("字符串长度无效");
+                }
+                stringOffsets[i] = buffer.position();
+                stringLengths[i] = length;
+                buffer.position(buffer.position() + length);
+            }
+
+            int[] dayCounts = new int[DAYS];
+            long total = 0;
+            for (int day = 0; day < DAYS; day++) {
+                dayCounts[day] = buffer.getInt();
+                if (dayCounts[day] < 0) {
+                    throw new IOException("课程数量无效");
+                }
+                total += dayCounts[day];
+            }
+            if (total * RECORD_SIZE != buffer.remaining()) {
+                throw new IOException("课程记录长度无效");
+            }
+
+            String[] strings = new String[stringCount];
+            long weekBit = week >= 1 && week < 64 ? 1L << week : 0L;
+            List<List<Course>> weeklyCourses = new ArrayList<>(DAYS);
+            for (int day = 0; day < DAYS; day++) {
+                List<Course> dayCourses = new ArrayList<>();
+                for (int i = 0; i < dayCounts[day]; i++) {
+                    int recordStart = buffer.position();
+                    int flags = buffer.getInt(recordStart + RECORD_FLAGS_OFFSET);
+                    long weekMask = buffer.getLong(recordStart + RECORD_WEEK_MASK_OFFSET);
+                    if ((flags & FLAG_ALL_WEEKS) != 0 || (weekMask & weekBit) != 0) {
+                        dayCourses.add(readCourse(buffer, strings, stringOffsets, stringLengths));
+                    } else {
+                        buffer.position(recordStart + RECORD_SIZE);
+                    }
+                }
+                weeklyCourses.add(dayCourses);
+            }
+            return weeklyCourses;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("快照文件不完整", e);
+        }
+    }
+
+    // 按需解码字符串表中的字符串，已解码的直接复用
+    private static Course readCourse(MappedByteBuffer buffer, String[] strings,
+                                     int[] stringOffsets, int[] stringLengths) throws IOException {
+        for (int i = 0; i < STRING_FIELDS; i++) {
+            int ref = buffer.getInt(buffer.position() + i * 4);
+            if (ref >= strings.length) {
+                throw new IOException("字符串下标无效");
+            }
+            if (ref >= 0 && strings[ref] == null) {
+                ByteBuffer view = buffer.duplicate();
+                view.position(stringOffsets[ref]);
+                byte[] encoded = new byte[stringLengths[ref]];
+                view.get(encoded);
+                strings[ref] = new String(encoded, StandardCharsets.UTF_8);
+            }
+        }
+        return readCourse(buffer, strings);
+    }
+
+    private static Course readCourse(MappedByteBuffer buffer, String[] strings) throws IOException {
+        String[] fields = new String[STRING_FIELDS];
+        for (int i = 0; i < fields.length; i++) {
+            int ref = buffer.getInt();
+            if (ref >= strings.length) {
+                throw new IOException("字符串下标无效");
+            }
+            fields[i] = ref < 0 ? null : strings[ref];
+        }
+        int weekday = buffer.getInt();
+        int firstWeek = buffer.getInt();
+        int flags = buffer.getInt();
+        long weekMask = buffer.getLong();
+        int slotMask = buffer.getInt();
+        return new Course(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6], fields[7],
+                weekday, (flags & FLAG_ALL_WEEKS) != 0, weekMask, slotMask, firstWeek);
+    }
+}
@@ -0,0 +1,402 @@
+package cn.pylin.xykcb;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 课表界面的状态：合并后的课程、课程颜色、选中的周次和各周的格子显示内容
+ * 生命周期跟随界面而不是 Activity 实例，Activity 重建时直接复用，不重新解析和构建
+ * 课程数据订阅自 {@link ScheduleCache}，课表或自定义课程发布新快照后自动更新
+ * 登录和课表同步由这里持有的 {@link LoginManager} 进行，Activity 因配置变化重建时继续进行，
+ * 结果和提示通过 LiveData 交给当前的 Activity，不引用已销毁的 Activity
+ */
+public class ScheduleViewModel extends AndroidViewModel {
+    // 与 CourseAdapter 中的调色板大小一致
+    static final int PALETTE_SIZE = 7;
+
+    /**
+     * 登录和同步过程中需要界面提示的消息，只处理一次，Activity 重建后不会重复提示
+     */
+    static final class LoginMessage {
+        final String text;
+        // 是否需要重新拉起登录窗口
+        final boolean requiresLogin;
+        private boolean handled;
+
+        LoginMessage(String text, boolean requiresLogin) {
+            this.text = text;
+            this.requiresLogin = requiresLogin;
+        }
+
+        /**
+         * 第一次调用返回 true，之后返回 false
+         */
+        boolean markHandled() {
+            if (handled) {
+                return false;
+            }
+            handled = true;
+            return true;
+        }
+    }
+
+    private final HashMap<String, Integer> courseColorIndexes = new HashMap<>();
+    private final RenderModelStore renderModels = new RenderModelStore(this::onRenderModelsReady);
+    // 选中的周次，ScheduleIndex.ALL_WEEKS 表示全部周次
+    private final MutableLiveData<Integer> selectedWeek = new MutableLiveData<>(1);
+    // 每次重建后当前周内容准备好时加一，界面据此刷新
+    private final MutableLiveData<Integer> renderGeneration = new MutableLiveData<>(0);
+    private final MutableLiveData<LoginMessage> loginMessage = new MutableLiveData<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LoginManager loginManager;
+    private List<List<Course>> weeklyCourses;
+    private ScheduleIndex scheduleIndex;
+    // 学期课程分布，随课表一起失效，第一次打开周次选择器或学期总览时计算
+    private TermOverview termOverview;
+    private boolean landscape;
+    private int currentWeek = 1;
+    // 学期周数，完整课表取自课表索引；部分课表或格子缓存至少包含显示的周次
+    private int weekCount;
+    private boolean loadStarted;
+    // 是否已收到完整课表（而不是登录前的空白课表或部分课表）
+    private boolean hasFullCourses;
+    // 从格子缓存恢复时的标题行，收到课程数据后不再使用
+    private String[] gridSnapshotHeaders;
+    // 最近一次按学期日历算出的当前周，日历变化时据此判断是否需要跳转
+    private int calendarWeek;
+    private final ScheduleCache.Listener scheduleListener = this::onScheduleChanged;
+
+    public ScheduleViewModel(@NonNull Application application) {
+        super(application);
+        // 颜色在重启后保持不变，只为新出现的课程分配
+        CourseColorStore.load(application, courseColorIndexes);
+        landscape = application.getResources().getConfiguration().orientation
+                == android.content.res.Configuration.ORIENTATION_LANDSCAPE;
+
+        calendarWeek = CourseDataManager.getCurrentWeek(application);
+
+        // 先订阅再读取当前快照，避免漏掉两者之间发布的数据
+        ScheduleCache.addListener(scheduleListener);
+        ScheduleCache.Snapshot snapshot = ScheduleCache.peek();
+        if (snapshot != null) {
+            setCourses(snapshot.getMergedCourses());
+        } else {
+            // 登录前先显示空白课表
+            List<List<Course>> emptyCourses = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                emptyCourses.add(new ArrayList<>());
+            }
+            setCourses(emptyCourses);
+            hasFullCourses = false;
+            restoreGridSnapshot();
+        }
+
+        loginManager = new LoginManager(application, new LoginManager.CourseDataCallback() {
+            @Override
+            public void onCourseDataReceived(List<List<Course>> weeklyCourses) {
+                runOnMainThread(() -> onCourseDataLoaded(weeklyCourses));
+            }
+
+            @Override
+            public void onPartialCourseDataReceived(List<List<Course>> weekCourses, int week) {
+                // 启动时在主线程同步回调，当前周在第一帧之前就已构建好
+                runOnMainThread(() -> setPartialCourses(weekCourses, week));
+            }
+
+            @Override
+            public void onScheduleChanged(ScheduleDiff diff) {
+                int movedCount = diff.count(ScheduleDiff.ChangeType.MOVED);
+                if (movedCount > 0) {
+                    runOnMainThread(() -> loginMessage.setValue(
+                            new LoginMessage("有" + movedCount + "节课的上课地点发生变化", false)));
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                runOnMainThread(() -> onLoginError(message));
+            }
+        });
+    }
+
+    // 上次显示的当前周格子与本次启动的周次和方向一致时，在数据加载前先显示
+    private void restoreGridSnapshot() {
+        Trace.beginSection("xykcb:restoreGridSnapshot");
+        try {
+            GridSnapshot snapshot = GridSnapshot.read(getApplication());
+            if (snapshot == null) {
+                return;
+            }
+            WeekRenderModel model = snapshot.getModel();
+            if (model.getWeek() != calendarWeek || model.isLandscape() != landscape) {
+                return;
+            }
+            gridSnapshotHeaders = snapshot.getDayHeaders();
+            currentWeek = calendarWeek;
+            weekCount = Math.max(weekCount, currentWeek);
+            selectedWeek.setValue(currentWeek);
+            renderModels.seed(scheduleIndex, courseColorIndexes, model);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        ScheduleCache.removeListener(scheduleListener);
+        // 界面关闭后不再等待同步结果，没有其他界面等待时取消尚未完成的请求
+        loginManager.cancel();
+    }
+
+    /**
+     * 界面使用的登录管理器，生命周期与 ViewModel 相同
+     */
+    public LoginManager getLoginManager() {
+        return loginManager;
+    }
+
+    /**
+     * 登录和同步的提示消息，界面处理前先调用 {@link LoginMessage#markHandled()}
+     */
+    public LiveData<LoginMessage> getLoginMessage() {
+        return loginMessage;
+    }
+
+    private void runOnMainThread(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            mainHandler.post(action);
+        }
+    }
+
+    // 登录得到本地或同步后的课表
+    private void onCourseDataLoaded(List<List<Course>> weeklyCourses) {
+        // 合并后的课表由 ScheduleCache 发布，这里已订阅；取到的是同一份缓存列表时直接跳过
+        setCourses(CourseDataManager.getMergedCourses(getApplication(), weeklyCourses));
+        // 使用基于日期判断的周次，确保本地数据也能显示正确周次
+        selectWeek(CourseDataManager.getCurrentWeek(getApplication()));
+    }
+
+    private void onLoginError(String message) {
+        // 登录失败后将周次切换为全部周次
+        if (message.contains("登录失败")) {
+            showAllWeeks();
+        }
+        // 登录失败或学校不支持时重新拉起登录窗口
+        loginMessage.setValue(new LoginMessage(message,
+                message.contains("登录失败") || message.contains("暂不支持")));
+    }
+
+    /**
+     * 更新课程数据，新内容在后台构建完成后通过 {@link #getRenderGeneration()} 通知界面
+     * @param mergedCourses 合并了自定义课程的每周课程
+     */
+    public void setCourses(List<List<Course>> mergedCourses) {
+        if (mergedCourses == weeklyCourses) {
+            // 同一快照重复推送时无需重新构建
+            return;
+        }
+        weeklyCourses = mergedCourses;
+        hasFullCourses = true;
+        gridSnapshotHeaders = null;
+        scheduleIndex = ScheduleCache.getIndex(mergedCourses);
+        termOverview = null;
+        weekCount = scheduleIndex.getMaxWeek();
+        assignCourseColors();
+        if (currentWeek > getWeekCount()) {
+            // 新课表的学期更短，选中的周次跟着缩短
+            currentWeek = getWeekCount();
+            if (!isShowingAllWeeks()) {
+                setSelectedWeek(currentWeek);
+            }
+        }
+        rebuildRenderModels();
+    }
+
+    /**
+     * 启动时先显示的部分课表，只包含 week 这一周的课程，在当前线程构建这一周并立即通知界面
+     * 部分课表无法得知学期周数，直接显示解码的这一周，不按学期周数截断；完整课表随后通过 {@link #setCourses} 替换，
+     * 届时超出学期的周次才回到最后一周
+     * 已有完整课表时忽略
+     */
+    public void setPartialCourses(List<List<Course>> weekCourses, int week) {
+        if (hasFullCourses) {
+            return;
+        }
+        Trace.beginSection("xykcb:setPartialCourses");
+        try {
+            weeklyCourses = weekCourses;
+            gridSnapshotHeaders = null;
+            scheduleIndex = new ScheduleIndex(weekCourses);
+            termOverview = null;
+            assignCourseColors();
+            currentWeek = Math.max(1, week);
+            weekCount = Math.max(scheduleIndex.getMaxWeek(), currentWeek);
+            renderModels.rebuildPartial(scheduleIndex, courseColorIndexes, landscape, currentWeek);
+            setSelectedWeek(currentWeek);
+            onRenderModelsReady();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 屏幕方向变化后调用：格子文本格式随方向变化，方向不同时才重新构建
+     */
+    public void setLandscape(boolean landscape) {
+        if (this.landscape != landscape) {
+            this.landscape = landscape;
+            rebuildRenderModels();
+        }
+    }
+
+    /**
+     * 切换到指定周次，超出学期周数时取最近的周次
+     */
+    public void selectWeek(int week) {
+        currentWeek = Math.max(1, Math.min(getWeekCount(), week));
+        setSelectedWeek(currentWeek);
+    }
+
+    public void showAllWeeks() {
+        setSelectedWeek(ScheduleIndex.ALL_WEEKS);
+    }
+
+    private void setSelectedWeek(int week) {
+        Integer current = selectedWeek.getValue();
+        if (current == null || current != week) {
+            selectedWeek.setValue(week);
+        }
+    }
+
+    public LiveData<Integer> getSelectedWeek() {
+        return selectedWeek;
+    }
+
+    /**
+     * 学期周数，取自课表索引，课表翻页、周次选择器、学期总览和小组件切换周次都以此为上限
+     */
+    public int getWeekCount() {
+        return weekCount;
+    }
+
+    /**
+     * 最近一次选中的具体周次（全部周次模式下为进入前的周次）
+     */
+    public int getCurrentWeek() {
+        return currentWeek;
+    }
+
+    public boolean isShowingAllWeeks() {
+        Integer week = selectedWeek.getValue();
+        return week != null && week == ScheduleIndex.ALL_WEEKS;
+    }
+
+    /**
+     * 是否已收到完整课表，此前显示的是空白、缓存的格子或部分课表
+     */
+    public boolean hasFullCourses() {
+        return hasFullCourses;
+    }
+
+    /**
+     * 启动时从格子缓存恢复的标题行，仅在收到课程数据之前且周次一致时返回，否则为 null
+     */
+    public String[] getGridSnapshotHeaders(int week) {
+        return gridSnapshotHeaders != null && week == currentWeek ? gridSnapshotHeaders : null;
+    }
+
+    /**
+     * 当前课表的学期课程分布，供周次选择器和学期总览使用
+     */
+    public TermOverview getTermOverview() {
+        if (termOverview == null) {
+            Trace.beginSection("xykcb:computeTermOverview");
+            try {
+                termOverview = TermOverview.compute(scheduleIndex, getWeekCount());
+            } finally {
+                Trace.endSection();
+            }
+        }
+        return termOverview;
+    }
+
+    public LiveData<Integer> getRenderGeneration() {
+        return renderGeneration;
+    }
+
+    /**
+     * 获取某周的显示内容，后台尚未构建到该周时在当前线程直接构建
+     */
+    public WeekRenderModel getRenderModel(int week) {
+        return renderModels.get(week);
+    }
+
+    /**
+     * 在后台提前构建相邻周次
+     */
+    public void prefetch(int... weeks) {
+        renderModels.prefetch(weeks);
+    }
+
+    /**
+     * 标记已开始加载课程数据，返回是否是第一次调用
+     * Activity 重建时登录仍由本 ViewModel 进行，据此跳过重新登录
+     */
+    public boolean markLoadStarted() {
+        if (loadStarted) {
+            return false;
+        }
+        loadStarted = true;
+        return true;
+    }
+
+    // 课表缓存发布了新快照，或学期日历变化
+    private void onScheduleChanged(ScheduleCache.Snapshot snapshot) {
+        setCourses(snapshot.getMergedCourses());
+        int week = CourseDataManager.getCurrentWeek(getApplication());
+        if (week != calendarWeek) {
+            calendarWeek = week;
+            if (!isShowingAllWeeks()) {
+                selectWeek(week);
+            }
+        }
+    }
+
+    private int getDisplayWeek() {
+        return isShowingAllWeeks() ? ScheduleIndex.ALL_WEEKS : currentWeek;
+    }
+
+    private void assignCourseColors() {
+        Trace.beginSection("xykcb:assignCourseColors");
+        try {
+            // 已分配颜色的课程保持不变，只为新课程分配并保存
+            List<String> newlyColored = CourseColorAssigner.assign(weeklyCourses, courseColorIndexes, PALETTE_SIZE);
+            CourseColorStore.save(getApplication(), courseColorIndexes, newlyColored);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void rebuildRenderModels() {
+        renderModels.rebuild(scheduleIndex, courseColorIndexes, landscape, getDisplayWeek());
+    }
+
+    // 当前显示周的内容已在后台构建完成
+    private void onRenderModelsReady() {
+        Integer generation = renderGeneration.getValue();
+        renderGeneration.setValue(generation != null ? generation + 1 : 1);
+    }
+}
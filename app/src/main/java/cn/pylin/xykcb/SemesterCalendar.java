@@ -0,0 +1,164 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 学期日历：只保存第1周周一的 epoch day，周次与日期之间的换算全部直接计算
+ * 取代原先按周保存"M.d"日期字符串的 WeekDates，任意周次都能换算日期；学期周数由 {@link ScheduleIndex#getMaxWeek()} 决定
+ */
+public final class SemesterCalendar {
+    private static final String PREFS_NAME = "SemesterCalendar";
+    private static final String KEY_FIRST_MONDAY = "firstMondayEpochDay";
+    // 旧版按周保存日期字符串的配置，读取后迁移并清除
+    private static final String PREFS_LEGACY_WEEK_DATES = "WeekDates";
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static volatile SemesterCalendar instance;
+
+    private final long firstMondayEpochDay;
+
+    private SemesterCalendar(long firstMondayEpochDay) {
+        this.firstMondayEpochDay = firstMondayEpochDay;
+    }
+
+    /**
+     * 获取学期日历，首次调用时从配置读取（必要时迁移旧数据）
+     */
+    public static SemesterCalendar get(Context context) {
+        SemesterCalendar calendar = instance;
+        if (calendar == null) {
+            synchronized (SemesterCalendar.class) {
+                calendar = instance;
+                if (calendar == null) {
+                    calendar = new SemesterCalendar(load(context));
+                    instance = calendar;
+                }
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * 根据服务器返回的当前周次，推算并保存第1周周一的日期
+     */
+    public static void saveCurrentWeek(Context context, int currentWeek) {
+        LocalDate thisMonday = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        long firstMonday = thisMonday.minusWeeks(currentWeek - 1L).toEpochDay();
+        save(context, firstMonday);
+    }
+
+    private static void save(Context context, long firstMondayEpochDay) {
+        SemesterCalendar previous = instance;
+        if (previous != null && previous.firstMondayEpochDay == firstMondayEpochDay) {
+            return;
+        }
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putLong(KEY_FIRST_MONDAY, firstMondayEpochDay).apply();
+        instance = new SemesterCalendar(firstMondayEpochDay);
+        // 周次换算变化，通知订阅者切换到新的当前周
+        ScheduleCache.notifyWeekChanged();
+    }
+
+    private static long load(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long firstMonday = prefs.getLong(KEY_FIRST_MONDAY, UNKNOWN);
+        if (firstMonday != UNKNOWN) {
+            return firstMonday;
+        }
+
+        // 迁移旧版 WeekDates：取第1周的第一个日期作为第1周周一
+        SharedPreferences legacyPrefs = context.getSharedPreferences(PREFS_LEGACY_WEEK_DATES, Context.MODE_PRIVATE);
+        String firstWeekDates = legacyPrefs.getString("1", null);
+        if (firstWeekDates == null || firstWeekDates.isEmpty()) {
+            return UNKNOWN;
+        }
+        LocalDate migrated = parseLegacyDate(firstWeekDates.split(",")[0].trim(), LocalDate.now());
+        if (migrated == null) {
+            return UNKNOWN;
+        }
+        prefs.edit().putLong(KEY_FIRST_MONDAY, migrated.toEpochDay()).apply();
+        legacyPrefs.edit().clear().apply();
+        return migrated.toEpochDay();
+    }
+
+    /**
+     * 旧数据只有"M.d"没有年份，在前后一年中选择离今天最近的周一
+     */
+    private static LocalDate parseLegacyDate(String monthDay, LocalDate today) {
+        String[] parts = monthDay.split("\\.");
+        if (parts.length != 2) {
+            return null;
+        }
+        int month;
+        int day;
+        try {
+            month = Integer.parseInt(parts[0]);
+            day = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        LocalDate best = null;
+        for (int year = today.getYear() - 1; year <= today.getYear() + 1; year++) {
+            LocalDate candidate;
+            try {
+                candidate = LocalDate.of(year, month, day);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (candidate.getDayOfWeek() != DayOfWeek.MONDAY) {
+                continue;
+            }
+            if (best == null || Math.abs(candidate.toEpochDay() - today.toEpochDay())
+                    < Math.abs(best.toEpochDay() - today.toEpochDay())) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 是否已知学期开始日期
+     */
+    public boolean isKnown() {
+        return firstMondayEpochDay != UNKNOWN;
+    }
+
+    /**
+     * 某天所在的周次，学期开始前为0或负数；学期未知时返回1
+     */
+    public int getWeekOf(LocalDate date) {
+        if (!isKnown()) {
+            return 1;
+        }
+        return (int) Math.floorDiv(date.toEpochDay() - firstMondayEpochDay, 7L) + 1;
+    }
+
+    /**
+     * 某周某天的日期
+     * @param dayOfWeek 星期（1-7，周一为1）
+     */
+    public LocalDate getDate(int week, int dayOfWeek) {
+        if (!isKnown()) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(firstMondayEpochDay + (week - 1L) * 7 + (dayOfWeek - 1));
+    }
+
+    /**
+     * 某周周一到周日的"M.d"日期文本，学期未知时为空字符串
+     */
+    public String[] getDateLabels(int week) {
+        String[] labels = new String[7];
+        for (int i = 0; i < 7; i++) {
+            LocalDate date = getDate(week, i + 1);
+            labels[i] = date == null ? "" : date.getMonthValue() + "." + date.getDayOfMonth();
+        }
+        return labels;
+    }
+}
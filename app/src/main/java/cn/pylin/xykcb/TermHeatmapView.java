@@ -0,0 +1,225 @@
+package cn.pylin.xykcb;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * 学期总览热力图：每周一行，每行按星期分为7组、每组5个大节格子，颜色深浅表示该格子的课程数
+ * 所有格子在一次 onDraw 中直接绘制，数据来自 {@link TermOverview}，不在绘制时查询课程
+ */
+public class TermHeatmapView extends View {
+    public interface OnWeekClickListener {
+        void onWeekClick(int week);
+    }
+
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+    // 颜色深浅的级数，每一级一支画笔
+    private static final int LEVELS = 8;
+    private static final float ROW_HEIGHT_DP = 16f;
+    private static final float HEADER_HEIGHT_DP = 22f;
+    private static final float LABEL_WIDTH_DP = 52f;
+    private static final String[] DAY_NAMES = {"一", "二", "三", "四", "五", "六", "日"};
+
+    private final Paint emptyPaint;
+    private final Paint[] levelPaints = new Paint[LEVELS];
+    private final Paint currentWeekPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint countPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF rect = new RectF();
+    private final Paint.FontMetrics labelMetrics;
+    private final Paint.FontMetrics countMetrics;
+
+    private final float rowHeight;
+    private final float headerHeight;
+    private final float labelWidth;
+    private final float cellGap;
+    private final float dayGap;
+    private final int touchSlop;
+
+    private TermOverview overview;
+    // 行首文字在设置数据时生成，绘制时不再创建字符串
+    private String[] weekLabels = new String[0];
+    private String[] classCountLabels = new String[0];
+    private int currentWeek;
+    private OnWeekClickListener onWeekClickListener;
+    private float downX;
+    private float downY;
+
+    public TermHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public TermHeatmapView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public TermHeatmapView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        rowHeight = dp(ROW_HEIGHT_DP);
+        headerHeight = dp(HEADER_HEIGHT_DP);
+        labelWidth = dp(LABEL_WIDTH_DP);
+        cellGap = dp(1);
+        dayGap = dp(4);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        int themeColor = ContextCompat.getColor(context, R.color.theme_color);
+        emptyPaint = CoursePaintCache.getFillPaint(ContextCompat.getColor(context, R.color.edit_background_color));
+        for (int level = 0; level < LEVELS; level++) {
+            // 最浅一级也保持可见，之后按级数线性加深
+            int alpha = 0x40 + (0xFF - 0x40) * level / (LEVELS - 1);
+            levelPaints[level] = CoursePaintCache.getFillPaint((alpha << 24) | (themeColor & 0x00FFFFFF));
+        }
+        currentWeekPaint.setStyle(Paint.Style.STROKE);
+        currentWeekPaint.setStrokeWidth(dp(1.5f));
+        currentWeekPaint.setColor(ContextCompat.getColor(context, R.color.red));
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.dialog_title_color));
+        labelPaint.setTextSize(sp(11));
+        countPaint.setColor(ContextCompat.getColor(context, R.color.info_text_color));
+        countPaint.setTextSize(sp(9));
+        labelMetrics = labelPaint.getFontMetrics();
+        countMetrics = countPaint.getFontMetrics();
+    }
+
+    /**
+     * @param currentWeek 用边框标出的周次
+     */
+    public void setOverview(TermOverview overview, int currentWeek) {
+        this.overview = overview;
+        this.currentWeek = currentWeek;
+        int weekCount = overview.getWeekCount();
+        weekLabels = new String[weekCount];
+        classCountLabels = new String[weekCount];
+        for (int week = 1; week <= weekCount; week++) {
+            weekLabels[week - 1] = String.valueOf(week);
+            classCountLabels[week - 1] = String.valueOf(overview.getWeekClassCount(week));
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    public void setOnWeekClickListener(OnWeekClickListener listener) {
+        this.onWeekClickListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int weekCount = overview != null ? overview.getWeekCount() : 0;
+        int height = (int) Math.ceil(headerHeight + rowHeight * weekCount) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (overview == null) {
+            return;
+        }
+        Trace.beginSection("xykcb:drawTermHeatmap");
+        try {
+            drawHeatmap(canvas);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void drawHeatmap(Canvas canvas) {
+        float left = getPaddingLeft() + labelWidth;
+        float top = getPaddingTop();
+        float dayWidth = (getWidth() - getPaddingRight() - left - dayGap * (DAYS - 1)) / DAYS;
+        float cellWidth = dayWidth / SLOTS;
+        if (cellWidth <= 0) {
+            return;
+        }
+
+        // 星期标题
+        float headerBaseline = top + (headerHeight - labelMetrics.ascent - labelMetrics.descent) / 2;
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        for (int day = 0; day < DAYS; day++) {
+            float dayLeft = left + day * (dayWidth + dayGap);
+            canvas.drawText(DAY_NAMES[day], dayLeft + dayWidth / 2, headerBaseline, labelPaint);
+        }
+
+        int maxCount = Math.max(1, overview.getMaxCellCount());
+        for (int week = 1; week <= overview.getWeekCount(); week++) {
+            float rowTop = top + headerHeight + (week - 1) * rowHeight;
+            float baseline = rowTop + (rowHeight - labelMetrics.ascent - labelMetrics.descent) / 2;
+
+            // 行首：周次和该周节数
+            labelPaint.setTextAlign(Paint.Align.LEFT);
+            canvas.drawText(weekLabels[week - 1], getPaddingLeft(), baseline, labelPaint);
+            countPaint.setTextAlign(Paint.Align.RIGHT);
+            float countBaseline = rowTop + (rowHeight - countMetrics.ascent - countMetrics.descent) / 2;
+            canvas.drawText(classCountLabels[week - 1], left - dayGap, countBaseline, countPaint);
+
+            for (int day = 1; day <= DAYS; day++) {
+                float dayLeft = left + (day - 1) * (dayWidth + dayGap);
+                for (int slot = 1; slot <= SLOTS; slot++) {
+                    int count = overview.getCellCount(week, day, slot);
+                    Paint paint = count == 0 ? emptyPaint
+                            : levelPaints[Math.min(LEVELS - 1, (count - 1) * LEVELS / maxCount)];
+                    float cellLeft = dayLeft + (slot - 1) * cellWidth;
+                    canvas.drawRect(cellLeft, rowTop + cellGap, cellLeft + cellWidth - cellGap,
+                            rowTop + rowHeight - cellGap, paint);
+                }
+            }
+
+            if (week == currentWeek) {
+                rect.set(getPaddingLeft(), rowTop, getWidth() - getPaddingRight(), rowTop + rowHeight);
+                canvas.drawRect(rect, currentWeekPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (Math.abs(event.getX() - downX) < touchSlop && Math.abs(event.getY() - downY) < touchSlop) {
+                    performClick();
+                    dispatchWeekClick(event.getY() - getPaddingTop());
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void dispatchWeekClick(float y) {
+        if (onWeekClickListener == null || overview == null || y < headerHeight) {
+            return;
+        }
+        int week = (int) ((y - headerHeight) / rowHeight) + 1;
+        if (week >= 1 && week <= overview.getWeekCount()) {
+            onWeekClickListener.onWeekClick(week);
+        }
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+
+    private float sp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value, getResources().getDisplayMetrics());
+    }
+}
@@ -17,7 +17,6 @@ import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import androidx.core.content.FileProvider;
-import androidx.recyclerview.widget.RecyclerView;
 import org.json.JSONObject;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -25,7 +24,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
@@ -35,7 +33,7 @@ import okhttp3.Response;
 public class UpdateManager {
     private static final String UPDATE_API_URL = "https://api.pylin.cn/xykcb_config.json";
     private final Context context;
-    private final RecyclerView recyclerView;
+    private final View anchorView;
     private boolean isManualCheck = false; // 新添加的标志，用于跟踪是否是手动检查更新
     
     public interface UpdateCallback {
@@ -43,9 +41,9 @@ public class UpdateManager {
         void onError(String message);
     }
     
-    public UpdateManager(Context context, RecyclerView recyclerView) {
+    public UpdateManager(Context context, View anchorView) {
         this.context = context;
-        this.recyclerView = recyclerView;
+        this.anchorView = anchorView;
     }
     
     public void checkForUpdates() {
@@ -71,11 +69,7 @@ public class UpdateManager {
     }
     
     private void performUpdateCheck(UpdateCallback callback) {
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        OkHttpClient client = HttpClients.api();
         
         Request request = new Request.Builder()
                 .url(UPDATE_API_URL)
@@ -232,12 +226,8 @@ public class UpdateManager {
             this.progressBar = progressBar;
             this.progressPercent = dialog.findViewById(R.id.tv_progress_percent);
             
-            // 创建OkHttp客户端，设置较长的超时时间用于文件下载
-            this.client = new OkHttpClient.Builder()
-                    .connectTimeout(30, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .writeTimeout(60, TimeUnit.SECONDS)
-                    .build();
+            // 共用连接池的下载客户端，超时时间较长
+            this.client = HttpClients.download();
         }
     
         public void downloadAndInstall(String downloadUrl) {
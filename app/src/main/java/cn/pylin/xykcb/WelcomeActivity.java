@@ -32,6 +32,7 @@ public class WelcomeActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        HttpClients.prewarm(this);
         
         // 检查是否从设置页面进入
         boolean fromSettings = getIntent().getBooleanExtra("from_settings", false);
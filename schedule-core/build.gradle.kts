@@ -0,0 +1,24 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(libs.gson)
+}
+
+// 基准测试：./gradlew :schedule-core:jmh，结果输出到 build/results/jmh
+jmh {
+    jmhVersion = libs.versions.jmh
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    // 同时统计每次操作的分配字节数
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+}
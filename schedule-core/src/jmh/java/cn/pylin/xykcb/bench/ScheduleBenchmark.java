@@ -0,0 +1,154 @@
+package cn.pylin.xykcb.bench;
+
+import cn.pylin.xykcb.Course;
+import cn.pylin.xykcb.CourseColorAssigner;
+import cn.pylin.xykcb.CurriculumParser;
+import cn.pylin.xykcb.CustomCourse;
+import cn.pylin.xykcb.ScheduleDiff;
+import cn.pylin.xykcb.ScheduleIndex;
+import cn.pylin.xykcb.ScheduleMerger;
+import cn.pylin.xykcb.TermOverview;
+import cn.pylin.xykcb.WeekRenderModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 课表核心逻辑的吞吐量基准：解析、合并、建索引、颜色分配、比对和查询
+ * 配合 gc 分析器可同时得到每次操作的分配字节数（gc.alloc.rate.norm）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScheduleBenchmark {
+    // 与 CourseAdapter 中的调色板大小一致
+    private static final int PALETTE_SIZE = 7;
+    private static final long SEED = 20240901L;
+
+    @Param({"SMALL", "TYPICAL", "STRESS"})
+    public SyntheticSchedules.Size size;
+
+    private String curriculumJson;
+    private List<List<Course>> standardCourses;
+    private List<List<Course>> reparsedCourses;
+    private List<CustomCourse> customCourses;
+    private List<List<Course>> mergedCourses;
+    private ScheduleIndex index;
+    private Map<String, Integer> colorIndexes;
+    private int weekCount;
+
+    @Setup
+    public void setUp() {
+        curriculumJson = SyntheticSchedules.curriculumJson(size, SEED);
+        standardCourses = CurriculumParser.parse(curriculumJson);
+        reparsedCourses = CurriculumParser.parse(curriculumJson);
+        customCourses = SyntheticSchedules.customCourses(size, SEED);
+        mergedCourses = ScheduleMerger.merge(standardCourses, ScheduleMerger.toWeeklyCourses(customCourses));
+        index = new ScheduleIndex(mergedCourses);
+        colorIndexes = assignColors();
+        weekCount = size.getWeekCount();
+    }
+
+    @Benchmark
+    public List<List<Course>> parse() {
+        return CurriculumParser.parse(curriculumJson);
+    }
+
+    @Benchmark
+    public List<List<Course>> merge() {
+        return ScheduleMerger.merge(standardCourses, ScheduleMerger.toWeeklyCourses(customCourses));
+    }
+
+    @Benchmark
+    public ScheduleIndex buildIndex() {
+        return new ScheduleIndex(mergedCourses);
+    }
+
+    @Benchmark
+    public Map<String, Integer> assignColors() {
+        Map<String, Integer> colorIndexes = new HashMap<>();
+        CourseColorAssigner.assign(mergedCourses, colorIndexes, PALETTE_SIZE);
+        return colorIndexes;
+    }
+
+    /**
+     * 后台构建一周的格子显示内容
+     */
+    @Benchmark
+    public WeekRenderModel buildWeekRenderModel() {
+        return WeekRenderModel.build(index, 1, colorIndexes, false);
+    }
+
+    /**
+     * 学期总览热力图和周次选择器的课程分布统计
+     */
+    @Benchmark
+    public TermOverview computeTermOverview() {
+        return TermOverview.compute(index, weekCount);
+    }
+
+    /**
+     * 刷新时与本地课表比对，数据相同是最常见的情况
+     */
+    @Benchmark
+    public ScheduleDiff diffUnchanged() {
+        return ScheduleDiff.compute(standardCourses, reparsedCourses);
+    }
+
+    /**
+     * 绘制整学期每一周的课表格子
+     */
+    @Benchmark
+    public void lookupAllCells(Blackhole blackhole) {
+        for (int week = 1; week <= weekCount; week++) {
+            for (int weekday = 1; weekday <= 7; weekday++) {
+                for (int slot = 1; slot <= 5; slot++) {
+                    blackhole.consume(index.getPrimaryCourse(week, weekday, slot));
+                    blackhole.consume(index.getOverlapCount(week, weekday, slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * 未建索引时逐门课程判断的查询方式，作为 lookupAllCells 的对照
+     */
+    @Benchmark
+    public void scanAllCells(Blackhole blackhole) {
+        for (int week = 1; week <= weekCount; week++) {
+            for (int weekday = 1; weekday <= 7; weekday++) {
+                List<Course> dayCourses = mergedCourses.get(weekday - 1);
+                for (int slot = 1; slot <= 5; slot++) {
+                    int count = 0;
+                    for (Course course : dayCourses) {
+                        if (course.isInTimeSlot(weekday, slot) && course.isInWeek(week)) {
+                            count++;
+                        }
+                    }
+                    blackhole.consume(count);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void lookupDays(Blackhole blackhole) {
+        for (int week = 1; week <= weekCount; week++) {
+            for (int weekday = 1; weekday <= 7; weekday++) {
+                blackhole.consume(index.getCoursesOfDay(week, weekday));
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package cn.pylin.xykcb.bench;
+
+import cn.pylin.xykcb.CustomCourse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 生成与 student/curriculum 返回格式一致的合成课表，固定随机种子保证每次运行数据相同
+ */
+public final class SyntheticSchedules {
+    private static final String[] WEEKDAY_NAMES = {"周一", "周二", "周三", "周四", "周五", "周六", "周日"};
+    private static final String[] SLOT_NAMES = {"第一大节", "第二大节", "第三大节", "第四大节", "第五大节"};
+
+    public enum Size {
+        SMALL(8, 6, 16, 1),
+        TYPICAL(30, 14, 20, 3),
+        STRESS(500, 120, 30, 40);
+
+        final int courseCount;
+        final int distinctNames;
+        final int weekCount;
+        final int customCourseCount;
+
+        Size(int courseCount, int distinctNames, int weekCount, int customCourseCount) {
+            this.courseCount = courseCount;
+            this.distinctNames = distinctNames;
+            this.weekCount = weekCount;
+            this.customCourseCount = customCourseCount;
+        }
+
+        public int getWeekCount() {
+            return weekCount;
+        }
+    }
+
+    private SyntheticSchedules() {
+    }
+
+    /**
+     * 课程数据 JSON，结构为 {"data":[{"date":[...],"item":[...]}]}
+     */
+    public static String curriculumJson(Size size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(size.courseCount * 256);
+        json.append("{\"code\":\"1\",\"Msg\":\"成功\",\"data\":[{\"date\":[");
+        for (int i = 0; i < WEEKDAY_NAMES.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"xqmc\":\"").append(WEEKDAY_NAMES[i]).append("\",\"xqid\":").append(i + 1).append('}');
+        }
+        json.append("],\"item\":[");
+        for (int i = 0; i < size.courseCount; i++) {
+            if (i > 0) json.append(',');
+            int nameIndex = i % size.distinctNames;
+            int weekday = 1 + random.nextInt(7);
+            int slot = 1 + random.nextInt(5);
+            int[] weeks = randomWeeks(random, size.weekCount);
+
+            json.append("{\"classTime\":\"").append(weekday)
+                    .append(String.format("%02d%02d", slot * 2 - 1, slot * 2)).append('"');
+            json.append(",\"courseName\":\"").append(courseName(nameIndex)).append('"');
+            json.append(",\"location\":\"").append(location(random)).append('"');
+            json.append(",\"teacherName\":\"教师").append(nameIndex % 37).append('"');
+            json.append(",\"classWeek\":\"").append(weeks[0]).append('-').append(weeks[weeks.length - 1]).append('"');
+            json.append(",\"maxClassTime\":\"").append(SLOT_NAMES[slot - 1]);
+            // 约五分之一的课程连上两大节
+            if (slot < 5 && random.nextInt(5) == 0) {
+                json.append(',').append(SLOT_NAMES[slot]);
+            }
+            json.append('"');
+            json.append(",\"classWeekDetails\":\"").append(join(weeks)).append('"');
+            json.append(",\"classroomId\":").append(random.nextInt(1000));
+            json.append('}');
+        }
+        json.append("]}]}");
+        return json.toString();
+    }
+
+    public static List<CustomCourse> customCourses(Size size, long seed) {
+        Random random = new Random(seed);
+        List<CustomCourse> courses = new ArrayList<>(size.customCourseCount);
+        for (int i = 0; i < size.customCourseCount; i++) {
+            CustomCourse course = new CustomCourse();
+            course.setCourseName("自定义" + i);
+            course.setLocation(location(random));
+            course.setTeacher("");
+            course.setWeekdays(new ArrayList<>(Arrays.asList(1 + random.nextInt(7))));
+            course.setTimeSlots(new ArrayList<>(Arrays.asList(1 + random.nextInt(5))));
+            List<Integer> weeks = new ArrayList<>();
+            for (int week : randomWeeks(random, size.weekCount)) {
+                weeks.add(week);
+            }
+            course.setWeeks(weeks);
+            courses.add(course);
+        }
+        return courses;
+    }
+
+    private static String courseName(int index) {
+        return "课程" + index + (index % 3 == 0 ? "（实验）" : "");
+    }
+
+    private static String location(Random random) {
+        String location = "A" + (100 + random.nextInt(400));
+        return random.nextInt(4) == 0 ? location + "(智慧教室)" : location;
+    }
+
+    // 连续周、单周或双周三种排课方式
+    private static int[] randomWeeks(Random random, int weekCount) {
+        int first = 1 + random.nextInt(4);
+        int last = Math.max(first, weekCount - random.nextInt(4));
+        int step = random.nextInt(3) == 0 ? 2 : 1;
+        int[] weeks = new int[(last - first) / step + 1];
+        for (int i = 0; i < weeks.length; i++) {
+            weeks[i] = first + i * step;
+        }
+        return weeks;
+    }
+
+    private static String join(int[] weeks) {
+        StringBuilder builder = new StringBuilder();
+        for (int week : weeks) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(week);
+        }
+        return builder.toString();
+    }
+}
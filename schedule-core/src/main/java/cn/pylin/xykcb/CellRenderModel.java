@@ -0,0 +1,76 @@
+package cn.pylin.xykcb;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 课表中一个格子的显示内容，构建完成后不可修改，绑定时只需把字段复制到视图
+ */
+public final class CellRenderModel {
+    public static final CellRenderModel EMPTY = new CellRenderModel("", -1, 0, Collections.<Course>emptyList());
+
+    private final String text;
+    private final int colorIndex;
+    private final int overlapCount;
+    private final List<Course> courses;
+
+    CellRenderModel(String text, int colorIndex, int overlapCount, List<Course> courses) {
+        this.text = text;
+        this.colorIndex = colorIndex;
+        this.overlapCount = overlapCount;
+        this.courses = courses;
+    }
+
+    /**
+     * 从缓存的显示内容恢复格子，只有外观没有课程详情，供启动时在数据加载前绘制
+     */
+    public static CellRenderModel ofAppearance(String text, int colorIndex, int overlapCount) {
+        if (colorIndex < 0) {
+            return EMPTY;
+        }
+        return new CellRenderModel(text, colorIndex, overlapCount, Collections.<Course>emptyList());
+    }
+
+    /** 格子中显示的文本（课程名、地点、教师） */
+    public String getText() { return text; }
+
+    /** 调色板下标，没有课程时为 -1 */
+    public int getColorIndex() { return colorIndex; }
+
+    /** 同一格子中的课程数，大于1时显示角标 */
+    public int getOverlapCount() { return overlapCount; }
+
+    /** 同一格子中的全部课程，供课程详情对话框使用 */
+    public List<Course> getCourses() { return courses; }
+
+    /** 格子中是否有课程需要绘制；从缓存恢复的格子有课程但没有课程详情 */
+    public boolean hasCourse() {
+        return colorIndex >= 0;
+    }
+
+    /**
+     * 显示出来是否完全相同（文本、颜色、角标），不比较课程详情
+     */
+    public boolean hasSameAppearance(CellRenderModel other) {
+        return other != null
+                && colorIndex == other.colorIndex
+                && overlapCount == other.overlapCount
+                && text.equals(other.text);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CellRenderModel)) return false;
+        CellRenderModel other = (CellRenderModel) o;
+        return colorIndex == other.colorIndex
+                && overlapCount == other.overlapCount
+                && text.equals(other.text)
+                && courses.equals(other.courses);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * text.hashCode() + colorIndex) + overlapCount;
+    }
+}
@@ -0,0 +1,200 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class Course {
+    // 周次位图最多支持第1-63周（第0位不用）
+    static final int MAX_MASK_WEEK = 63;
+    // parseWeekMask 遇到超出位图范围的周次时的返回值，第0位不会出现在正常的位图中
+    private static final long WEEK_OUT_OF_RANGE = 1L;
+    private static final Logger LOGGER = Logger.getLogger("Course");
+
+    private final String date;
+    private final String classTime;
+    private final String courseName;
+    private final String location;
+    private final String teacher;
+    private final String weekRange;
+    private final String maxClassTime;
+    private final String classWeekDetails;
+
+    // 构造时一次性解码的结果，避免每次判断都拆分字符串
+    private final int weekday;
+    private final boolean allWeeks;
+    private final long weekMask;
+    private final int slotMask;
+    private final int firstWeek;
+
+    public Course(String date, String classTime, String courseName,
+                  String location, String teacher, String weekRange,
+                  String maxClassTime, String classWeekDetails) {
+        this.date = date;
+        this.classTime = classTime;
+        this.courseName = courseName;
+        this.location = location;
+        this.teacher = teacher;
+        this.weekRange = weekRange;
+        this.maxClassTime = maxClassTime;
+        this.classWeekDetails = classWeekDetails;
+
+        this.weekday = parseWeekday(classTime);
+        // 如果没有详细周数信息，默认显示所有周的课程
+        boolean noWeekDetails = classWeekDetails == null || classWeekDetails.isEmpty();
+        long mask = noWeekDetails ? 0L : parseWeekMask(classWeekDetails);
+        boolean outOfRange = mask == WEEK_OUT_OF_RANGE;
+        if (outOfRange) {
+            // 位图无法表示的周次按所有周显示，不让课程从课表中消失
+            LOGGER.warning("周次超出第" + MAX_MASK_WEEK + "周，按所有周显示：" + courseName + " " + classWeekDetails);
+        }
+        this.allWeeks = noWeekDetails || outOfRange;
+        this.weekMask = allWeeks ? 0L : mask;
+        this.slotMask = parseSlotMask(maxClassTime);
+        this.firstWeek = parseFirstWeek(weekRange);
+    }
+
+    /**
+     * 使用已解码的周次/节次信息创建课程，供二进制快照读取时使用，跳过字符串解析
+     */
+    public Course(String date, String classTime, String courseName,
+                  String location, String teacher, String weekRange,
+                  String maxClassTime, String classWeekDetails,
+                  int weekday, boolean allWeeks, long weekMask, int slotMask, int firstWeek) {
+        this.date = date;
+        this.classTime = classTime;
+        this.courseName = courseName;
+        this.location = location;
+        this.teacher = teacher;
+        this.weekRange = weekRange;
+        this.maxClassTime = maxClassTime;
+        this.classWeekDetails = classWeekDetails;
+        this.weekday = weekday;
+        this.allWeeks = allWeeks;
+        this.weekMask = weekMask;
+        this.slotMask = slotMask;
+        this.firstWeek = firstWeek;
+    }
+
+    public String getCourseName() { return courseName; }
+    public String getLocation() { return location; }
+    public String getTeacher() { return teacher; }
+    public String getclassWeek() { return weekRange; }
+    public String getDate() { return date; }
+    public String getClassTime() { return classTime; }
+    public String getMaxClassTime() { return maxClassTime; }
+    public String getClassWeekDetails() { return classWeekDetails; }
+
+    public int getWeekday() {
+        return weekday;
+    }
+
+    /**
+     * 周次位图，第 n 位表示第 n 周有课；没有详细周数信息时为 0，见 {@link #isAllWeeks()}
+     */
+    public long getWeekMask() { return weekMask; }
+
+    /**
+     * 节次位图，第 n 位表示第 n 大节（1-5）
+     */
+    public int getSlotMask() { return slotMask; }
+
+    public boolean isAllWeeks() { return allWeeks; }
+
+    /**
+     * 周次范围（如"3-16"）中的起始周，无法解析时为1
+     */
+    public int getFirstWeek() { return firstWeek; }
+
+    public List<Integer> getTimeSlots() {
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 1; slot <= 5; slot++) {
+            if ((slotMask & (1 << slot)) != 0) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    public boolean isInWeek(int week) {
+        if (allWeeks) {
+            return true;
+        }
+        if (week < 1 || week > MAX_MASK_WEEK) {
+            return false;
+        }
+        return (weekMask & (1L << week)) != 0;
+    }
+
+    public boolean isInTimeSlot(int weekday, int timeSlot) {
+        if (this.weekday != weekday || timeSlot < 1 || timeSlot > 5) {
+            return false;
+        }
+        return (slotMask & (1 << timeSlot)) != 0;
+    }
+
+    private static int parseWeekday(String classTime) {
+        if (classTime == null || classTime.isEmpty()) return -1;
+        char c = classTime.charAt(0);
+        if (c < '0' || c > '9') return -1;
+        return c - '0';
+    }
+
+    private static int parseFirstWeek(String weekRange) {
+        if (weekRange == null || weekRange.isEmpty()) return 1;
+        try {
+            String[] parts = weekRange.split("-");
+            return Integer.parseInt(parts[0]);
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    // 按英文逗号分割周数字符串，忽略无效的周数格式；有超出位图范围的周次时返回 WEEK_OUT_OF_RANGE
+    private static long parseWeekMask(String weekDetails) {
+        long mask = 0L;
+        int value = 0;
+        boolean hasDigit = false;
+        boolean valid = true;
+        int length = weekDetails.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? weekDetails.charAt(i) : ',';
+            if (c == ',') {
+                if (hasDigit && valid && value > MAX_MASK_WEEK) {
+                    return WEEK_OUT_OF_RANGE;
+                }
+                if (hasDigit && valid && value >= 1) {
+                    mask |= 1L << value;
+                }
+                value = 0;
+                hasDigit = false;
+                valid = true;
+            } else if (c >= '0' && c <= '9') {
+                if (value <= MAX_MASK_WEEK) {
+                    value = value * 10 + (c - '0');
+                }
+                hasDigit = true;
+            } else if (!Character.isWhitespace(c)) {
+                valid = false;
+            }
+        }
+        return mask;
+    }
+
+    private static int parseSlotMask(String maxClassTime) {
+        int mask = 0;
+        if (maxClassTime == null) return mask;
+
+        String[] parts = maxClassTime.split(",");
+        for (String part : parts) {
+            switch (part.trim()) {
+                case "第一大节": mask |= 1 << 1; break;
+                case "第二大节": mask |= 1 << 2; break;
+                case "第三大节": mask |= 1 << 3; break;
+                case "第四大节": mask |= 1 << 4; break;
+                case "第五大节": mask |= 1 << 5; break;
+            }
+        }
+        return mask;
+    }
+}
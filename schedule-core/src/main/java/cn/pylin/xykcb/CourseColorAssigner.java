@@ -0,0 +1,114 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 课程颜色分配：相邻（同一天相邻节次或同一节次相邻天）的课程尽量使用不同颜色
+ * 结果为 课程名 -> 调色板下标，已分配的课程保持原有颜色
+ *
+ * 7x5 的课表格子用一个 long 表示（第 day*5+slot-1 位），课程占用的格子、相邻格子和每种颜色覆盖的格子
+ * 都是位图，按占用格子数从多到少贪心着色，每门课只需对每种颜色做一次位运算
+ */
+public final class CourseColorAssigner {
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+    private static final long GRID_MASK = (1L << (DAYS * SLOTS)) - 1;
+    // 每天第一大节、第五大节所在的位，用于防止上下移位时跨到相邻的一天
+    private static final long FIRST_SLOT_MASK;
+    private static final long LAST_SLOT_MASK;
+
+    static {
+        long first = 0;
+        long last = 0;
+        for (int day = 0; day < DAYS; day++) {
+            first |= 1L << (day * SLOTS);
+            last |= 1L << (day * SLOTS + SLOTS - 1);
+        }
+        FIRST_SLOT_MASK = first;
+        LAST_SLOT_MASK = last;
+    }
+
+    private CourseColorAssigner() {
+    }
+
+    /**
+     * 为 colorIndexes 中尚未分配颜色（或下标超出调色板）的课程分配调色板下标
+     * @return 本次新分配颜色的课程名，调用方只需持久化这些条目
+     */
+    public static List<String> assign(List<List<Course>> weeklyCourses, Map<String, Integer> colorIndexes, int paletteSize) {
+        // 第一步：收集每门课程占用的格子
+        Map<String, Long> occupancy = new HashMap<>();
+        for (List<Course> dayCourses : weeklyCourses) {
+            for (Course course : dayCourses) {
+                Long mask = occupancy.get(course.getCourseName());
+                occupancy.put(course.getCourseName(), (mask != null ? mask : 0L) | occupancyOf(course));
+            }
+        }
+
+        // 第二步：统计当前课表中已着色课程在每种颜色上覆盖的格子和使用次数
+        long[] colorMasks = new long[paletteSize];
+        int[] colorUsageCount = new int[paletteSize];
+        List<String> uncolored = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : occupancy.entrySet()) {
+            Integer colorIndex = colorIndexes.get(entry.getKey());
+            if (colorIndex != null && colorIndex >= 0 && colorIndex < paletteSize) {
+                colorMasks[colorIndex] |= entry.getValue();
+                colorUsageCount[colorIndex]++;
+            } else {
+                uncolored.add(entry.getKey());
+            }
+        }
+        if (uncolored.isEmpty()) {
+            return uncolored;
+        }
+
+        // 第三步：按占用格子数排序，先处理出现次数多的课程，名称作为次序保证结果稳定
+        uncolored.sort((a, b) -> {
+            int diff = Long.bitCount(occupancy.get(b)) - Long.bitCount(occupancy.get(a));
+            return diff != 0 ? diff : a.compareTo(b);
+        });
+        for (String courseName : uncolored) {
+            long mask = occupancy.get(courseName);
+            int colorIndex = selectOptimalColor(neighbourhood(mask), colorMasks, colorUsageCount);
+            colorMasks[colorIndex] |= mask;
+            colorUsageCount[colorIndex]++;
+            colorIndexes.put(courseName, colorIndex);
+        }
+        return uncolored;
+    }
+
+    // 选择冲突格子最少且使用次数较少的颜色，冲突权重更高
+    private static int selectOptimalColor(long neighbourhood, long[] colorMasks, int[] colorUsageCount) {
+        int bestColorIndex = 0;
+        int bestScore = Integer.MAX_VALUE;
+        for (int i = 0; i < colorMasks.length; i++) {
+            int currentScore = Long.bitCount(neighbourhood & colorMasks[i]) * 100 + colorUsageCount[i];
+            if (currentScore < bestScore) {
+                bestScore = currentScore;
+                bestColorIndex = i;
+            }
+        }
+        return bestColorIndex;
+    }
+
+    // 课程占用的格子位图
+    private static long occupancyOf(Course course) {
+        int weekday = course.getWeekday();
+        if (weekday < 1 || weekday > DAYS) {
+            return 0L;
+        }
+        // 节次位图第 n 位表示第 n 大节，右移一位对齐到第 0 位
+        long slots = (course.getSlotMask() >>> 1) & ((1 << SLOTS) - 1);
+        return slots << ((weekday - 1) * SLOTS);
+    }
+
+    // 格子本身及其上下左右相邻的格子
+    private static long neighbourhood(long mask) {
+        long horizontal = (mask << SLOTS) | (mask >>> SLOTS);
+        long vertical = ((mask & ~LAST_SLOT_MASK) << 1) | ((mask & ~FIRST_SLOT_MASK) >>> 1);
+        return (mask | horizontal | vertical) & GRID_MASK;
+    }
+}
@@ -0,0 +1,210 @@
+package cn.pylin.xykcb;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * student/curriculum 返回数据的流式解析，不依赖 Android，可在普通 JVM 上运行和做基准测试
+ */
+public final class CurriculumParser {
+    // item 中需要读取的字段，下标与 ITEM_* 常量对应
+    private static final String[] ITEM_FIELDS = {
+            "classTime", "courseName", "location", "teacherName",
+            "classWeek", "maxClassTime", "classWeekDetails"
+    };
+    private static final int ITEM_CLASS_TIME = 0;
+    private static final int ITEM_COURSE_NAME = 1;
+    private static final int ITEM_LOCATION = 2;
+    private static final int ITEM_TEACHER_NAME = 3;
+    private static final int ITEM_CLASS_WEEK = 4;
+    private static final int ITEM_MAX_CLASS_TIME = 5;
+    private static final int ITEM_CLASS_WEEK_DETAILS = 6;
+
+    private CurriculumParser() {
+    }
+
+    public static List<List<Course>> parse(String jsonString) {
+        if (jsonString == null || jsonString.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return parse(new StringReader(jsonString));
+    }
+
+    /**
+     * 直接从词法流生成 Course，不构建完整的 JSON 树。
+     * 每个 data 元素内第 j 个 item 与 date[j % date.length] 配对；
+     * 数据不完整时保留已解析出的课程
+     */
+    public static List<List<Course>> parse(Reader in) {
+        List<Course> courseList = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("data".equals(reader.nextName())) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readDataObject(reader, courseList);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+        }
+
+        return groupByWeekday(courseList);
+    }
+
+    private static void readDataObject(JsonReader reader, List<Course> courseList) throws IOException {
+        List<String> dates = null;
+        // item 出现在 date 之前时先暂存原始字段，读到 date 后再配对
+        List<String[]> pendingItems = null;
+        int itemIndex = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("item".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String[] fields = readItem(reader);
+                    if (dates != null) {
+                        courseList.add(createCourse(dates, itemIndex, fields));
+                    } else {
+                        if (pendingItems == null) {
+                            pendingItems = new ArrayList<>();
+                        }
+                        pendingItems.add(fields);
+                    }
+                    itemIndex++;
+                }
+                reader.endArray();
+            } else if ("date".equals(name)) {
+                dates = readDates(reader);
+                if (pendingItems != null) {
+                    for (int j = 0; j < pendingItems.size(); j++) {
+                        courseList.add(createCourse(dates, j, pendingItems.get(j)));
+                    }
+                    pendingItems = null;
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (dates == null) {
+            throw new IOException("缺少date字段");
+        }
+    }
+
+    private static Course createCourse(List<String> dates, int itemIndex, String[] fields) throws IOException {
+        if (dates.isEmpty()) {
+            throw new IOException("date字段为空");
+        }
+        return new Course(
+                dates.get(itemIndex % dates.size()),
+                fields[ITEM_CLASS_TIME],
+                fields[ITEM_COURSE_NAME],
+                fields[ITEM_LOCATION],
+                fields[ITEM_TEACHER_NAME],
+                fields[ITEM_CLASS_WEEK],
+                fields[ITEM_MAX_CLASS_TIME],
+                fields[ITEM_CLASS_WEEK_DETAILS] != null ? fields[ITEM_CLASS_WEEK_DETAILS] : ""
+        );
+    }
+
+    private static String[] readItem(JsonReader reader) throws IOException {
+        String[] fields = new String[ITEM_FIELDS.length];
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index = indexOfItemField(reader.nextName());
+            if (index >= 0) {
+                fields[index] = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // 除 classWeekDetails 外均为必需字段
+        for (int i = 0; i < ITEM_CLASS_WEEK_DETAILS; i++) {
+            if (fields[i] == null) {
+                throw new IOException("缺少字段：" + ITEM_FIELDS[i]);
+            }
+        }
+        return fields;
+    }
+
+    private static List<String> readDates(JsonReader reader) throws IOException {
+        List<String> dates = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String xqmc = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("xqmc".equals(reader.nextName())) {
+                    xqmc = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (xqmc == null) {
+                throw new IOException("缺少字段：xqmc");
+            }
+            dates.add(xqmc);
+        }
+        reader.endArray();
+        return dates;
+    }
+
+    private static int indexOfItemField(String name) {
+        for (int i = 0; i < ITEM_FIELDS.length; i++) {
+            if (ITEM_FIELDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 读取标量值并转为字符串，null 按 org.json 的 getString 行为返回 "null"
+    private static String nextString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return "null";
+            default:
+                reader.skipValue();
+                return "";
+        }
+    }
+
+    private static List<List<Course>> groupByWeekday(List<Course> courses) {
+        List<List<Course>> groupedCourses = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            groupedCourses.add(new ArrayList<>());
+        }
+
+        for (Course course : courses) {
+            int weekday = course.getWeekday();
+            if (weekday >= 1 && weekday <= 7) {
+                groupedCourses.get(weekday - 1).add(course);
+            }
+        }
+        return groupedCourses;
+    }
+}
@@ -0,0 +1,240 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 新旧课表的结构化比对
+ * 以课程身份（课程名 + 教师）的哈希加上具体的 周次/星期/节次 作为一次"上课"的键，
+ * 比较两份课表得到新增、删除和地点变更的上课记录；
+ * 是否需要保存新课表（{@link #hasChanges()}）按每天课程的全部字段精确比较，不依赖哈希
+ */
+public final class ScheduleDiff {
+    public enum ChangeType {
+        ADDED,   // 新增的上课
+        REMOVED, // 取消的上课
+        MOVED    // 同一时间同一课程，地点发生变化
+    }
+
+    public static final class Change {
+        private final ChangeType type;
+        private final Course course;
+        private final Course previousCourse;
+        private final int week;
+        private final int weekday;
+        private final int slot;
+
+        Change(ChangeType type, Course course, Course previousCourse, int week, int weekday, int slot) {
+            this.type = type;
+            this.course = course;
+            this.previousCourse = previousCourse;
+            this.week = week;
+            this.weekday = weekday;
+            this.slot = slot;
+        }
+
+        public ChangeType getType() { return type; }
+        /** 变化后的课程，REMOVED 时为被删除的课程 */
+        public Course getCourse() { return course; }
+        /** 变化前的课程，仅 MOVED 时有值 */
+        public Course getPreviousCourse() { return previousCourse; }
+        /** 周次，{@link ScheduleIndex#ALL_WEEKS} 表示课程没有详细周次信息 */
+        public int getWeek() { return week; }
+        public int getWeekday() { return weekday; }
+        public int getSlot() { return slot; }
+
+        @Override
+        public String toString() {
+            return type + "{" + course.getCourseName() + ", week=" + week
+                    + ", weekday=" + weekday + ", slot=" + slot + "}";
+        }
+    }
+
+    private final List<Change> changes;
+    private final boolean contentChanged;
+
+    private ScheduleDiff(List<Change> changes, boolean contentChanged) {
+        this.changes = changes;
+        this.contentChanged = contentChanged;
+    }
+
+    /**
+     * 比较两份按星期分组的课程列表
+     */
+    public static ScheduleDiff compute(List<List<Course>> oldCourses, List<List<Course>> newCourses) {
+        Map<Long, List<Course>> oldOccurrences = collectOccurrences(oldCourses);
+        Map<Long, List<Course>> newOccurrences = collectOccurrences(newCourses);
+
+        List<Change> changes = new ArrayList<>();
+        for (Map.Entry<Long, List<Course>> entry : newOccurrences.entrySet()) {
+            List<Course> previous = oldOccurrences.get(entry.getKey());
+            pairOccurrences(entry.getKey(), previous != null ? previous : Collections.<Course>emptyList(),
+                    entry.getValue(), changes);
+        }
+        for (Map.Entry<Long, List<Course>> entry : oldOccurrences.entrySet()) {
+            if (!newOccurrences.containsKey(entry.getKey())) {
+                pairOccurrences(entry.getKey(), entry.getValue(), Collections.<Course>emptyList(), changes);
+            }
+        }
+
+        // 上课记录没有变化时，再逐个字段比较（如周次范围文本），判断是否需要保存新数据
+        boolean contentChanged = !changes.isEmpty() || !sameContent(oldCourses, newCourses);
+        return new ScheduleDiff(Collections.unmodifiableList(changes), contentChanged);
+    }
+
+    /**
+     * 课表内容是否有任何变化，没有变化时可以跳过保存和界面刷新
+     */
+    public boolean hasChanges() {
+        return contentChanged;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public int count(ChangeType type) {
+        int count = 0;
+        for (Change change : changes) {
+            if (change.type == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Map<Long, List<Course>> collectOccurrences(List<List<Course>> weeklyCourses) {
+        Map<Long, List<Course>> occurrences = new HashMap<>();
+        for (int day = 0; day < weeklyCourses.size(); day++) {
+            for (Course course : weeklyCourses.get(day)) {
+                int identity = identityHash(course);
+                int slotMask = course.getSlotMask();
+                if (course.isAllWeeks()) {
+                    putSlots(occurrences, identity, ScheduleIndex.ALL_WEEKS, day + 1, slotMask, course);
+                    continue;
+                }
+                long weekMask = course.getWeekMask();
+                while (weekMask != 0) {
+                    int week = Long.numberOfTrailingZeros(weekMask);
+                    weekMask &= weekMask - 1;
+                    putSlots(occurrences, identity, week, day + 1, slotMask, course);
+                }
+            }
+        }
+        return occurrences;
+    }
+
+    // 同一课程同一时间可能有多条记录（如分组在不同教室上课），同一个键下保存全部记录
+    private static void putSlots(Map<Long, List<Course>> occurrences, int identity, int week, int weekday,
+                                 int slotMask, Course course) {
+        for (int slot = 1; slot <= ScheduleIndex.SLOTS; slot++) {
+            if ((slotMask & (1 << slot)) != 0) {
+                occurrences.computeIfAbsent(occurrenceKey(identity, week, weekday, slot),
+                        key -> new ArrayList<>(1)).add(course);
+            }
+        }
+    }
+
+    /**
+     * 配对同一键下新旧两边的上课记录：地点相同的先配对（无变化），同一课程剩下的依次配对为地点变更，
+     * 新的一边剩余的为新增，旧的一边剩余的为删除
+     */
+    private static void pairOccurrences(long key, List<Course> oldList, List<Course> newList, List<Change> changes) {
+        List<Course> unmatchedOld = new ArrayList<>(oldList);
+        List<Course> unmatchedNew = new ArrayList<>();
+        for (Course course : newList) {
+            if (!removeMatch(unmatchedOld, course, true)) {
+                unmatchedNew.add(course);
+            }
+        }
+        for (Course course : unmatchedNew) {
+            Course previous = findMatch(unmatchedOld, course, false);
+            if (previous != null) {
+                unmatchedOld.remove(previous);
+                changes.add(createChange(ChangeType.MOVED, course, previous, key));
+            } else {
+                changes.add(createChange(ChangeType.ADDED, course, null, key));
+            }
+        }
+        for (Course course : unmatchedOld) {
+            changes.add(createChange(ChangeType.REMOVED, course, null, key));
+        }
+    }
+
+    private static boolean removeMatch(List<Course> candidates, Course course, boolean sameLocation) {
+        Course match = findMatch(candidates, course, sameLocation);
+        return match != null && candidates.remove(match);
+    }
+
+    // 哈希碰撞时以实际字段为准
+    private static Course findMatch(List<Course> candidates, Course course, boolean sameLocation) {
+        for (Course candidate : candidates) {
+            if (sameIdentity(candidate, course)
+                    && (!sameLocation || Objects.equals(candidate.getLocation(), course.getLocation()))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // 高32位为课程身份哈希，低位依次为周次、星期、节次
+    private static long occurrenceKey(int identity, int week, int weekday, int slot) {
+        return ((long) identity << 32) | ((long) week << 8) | (weekday << 4) | slot;
+    }
+
+    private static Change createChange(ChangeType type, Course course, Course previous, long key) {
+        int week = (int) ((key >> 8) & 0xFF);
+        int weekday = (int) ((key >> 4) & 0xF);
+        int slot = (int) (key & 0xF);
+        return new Change(type, course, previous, week, weekday, slot);
+    }
+
+    private static int identityHash(Course course) {
+        return Objects.hash(course.getCourseName(), course.getTeacher());
+    }
+
+    private static boolean sameIdentity(Course a, Course b) {
+        return Objects.equals(a.getCourseName(), b.getCourseName())
+                && Objects.equals(a.getTeacher(), b.getTeacher());
+    }
+
+    // 每天的课程在不计顺序的情况下全部字段都相同；保存与否由此决定，不能使用有碰撞可能的哈希
+    private static boolean sameContent(List<List<Course>> oldCourses, List<List<Course>> newCourses) {
+        int days = Math.max(oldCourses.size(), newCourses.size());
+        for (int day = 0; day < days; day++) {
+            List<Course> oldDay = day < oldCourses.size() ? oldCourses.get(day) : Collections.<Course>emptyList();
+            List<Course> newDay = day < newCourses.size() ? newCourses.get(day) : Collections.<Course>emptyList();
+            if (oldDay.size() != newDay.size()) {
+                return false;
+            }
+            Map<List<String>, Integer> remaining = new HashMap<>();
+            for (Course course : oldDay) {
+                remaining.merge(fields(course), 1, Integer::sum);
+            }
+            for (Course course : newDay) {
+                List<String> key = fields(course);
+                Integer count = remaining.get(key);
+                if (count == null) {
+                    return false;
+                }
+                if (count == 1) {
+                    remaining.remove(key);
+                } else {
+                    remaining.put(key, count - 1);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static List<String> fields(Course course) {
+        return Arrays.asList(course.getDate(), course.getClassTime(), course.getCourseName(),
+                course.getLocation(), course.getTeacher(), course.getclassWeek(),
+                course.getMaxClassTime(), course.getClassWeekDetails());
+    }
+}
@@ -0,0 +1,189 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 课表索引：由合并后的（标准 + 自定义）课程列表一次性构建，之后只读
+ * 按 [周次][星期][节次] 预先分好格子，课表、小组件和通知查询时不再遍历课程或解析字符串
+ * 第0周表示"全部周次"；学期长度以 {@link #getMaxWeek()} 为准，课表翻页、周次选择和小组件都以它为上限
+ */
+public final class ScheduleIndex {
+    public static final int ALL_WEEKS = 0;
+    static final int DAYS = 7;
+    static final int SLOTS = 5;
+    // 学期默认24周，课程安排到更晚的周次时按最晚的周次延长
+    private static final int DEFAULT_MAX_WEEK = 24;
+
+    private final List<List<Course>> weeklyCourses;
+    private final int maxWeek;
+    private final long scheduledWeekMask;
+    private final List<Course>[] cellCourses;
+    private final Course[] primaryCourses;
+    private final List<Course>[] dayCourses;
+
+    public ScheduleIndex(List<List<Course>> weeklyCourses) {
+        this.weeklyCourses = weeklyCourses;
+
+        int highestWeek = DEFAULT_MAX_WEEK;
+        for (List<Course> courses : weeklyCourses) {
+            for (Course course : courses) {
+                long mask = course.getWeekMask();
+                if (mask != 0) {
+                    highestWeek = Math.max(highestWeek, 63 - Long.numberOfLeadingZeros(mask));
+                }
+            }
+        }
+        this.maxWeek = highestWeek;
+
+        // 超出学期的周次共用最后一组格子，其中只有不限周次的课程
+        int weekCount = maxWeek + 2;
+        cellCourses = newCourseLists(weekCount * DAYS * SLOTS);
+        primaryCourses = new Course[weekCount * DAYS * SLOTS];
+        dayCourses = newCourseLists(weekCount * DAYS);
+
+        long weekMask = 0L;
+        for (int day = 0; day < DAYS; day++) {
+            List<Course> courses = day < weeklyCourses.size()
+                    ? weeklyCourses.get(day) : Collections.<Course>emptyList();
+            for (int week = ALL_WEEKS; week <= maxWeek + 1; week++) {
+                List<Course> daily = new ArrayList<>();
+                for (Course course : courses) {
+                    if (week != ALL_WEEKS && !course.isInWeek(week)) {
+                        continue;
+                    }
+                    daily.add(course);
+                    for (int slot = 1; slot <= SLOTS; slot++) {
+                        if (course.isInTimeSlot(day + 1, slot)) {
+                            addToCell(cellIndex(week, day, slot), course);
+                        }
+                    }
+                }
+                if (!daily.isEmpty() && week != ALL_WEEKS && week <= maxWeek) {
+                    weekMask |= 1L << week;
+                }
+                dayCourses[week * DAYS + day] = freeze(daily);
+            }
+        }
+        this.scheduledWeekMask = weekMask;
+
+        for (int i = 0; i < cellCourses.length; i++) {
+            cellCourses[i] = freeze(cellCourses[i]);
+        }
+    }
+
+    private void addToCell(int index, Course course) {
+        List<Course> cell = cellCourses[index];
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            cellCourses[index] = cell;
+        }
+        cell.add(course);
+
+        // 重叠时优先显示起始周最早的课程
+        Course primary = primaryCourses[index];
+        if (primary == null || course.getFirstWeek() < primary.getFirstWeek()) {
+            primaryCourses[index] = course;
+        }
+    }
+
+    // 泛型数组只能以原始类型创建，数组只在本类内部使用，不会存入其他类型的元素
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Course>[] newCourseLists(int length) {
+        return new List[length];
+    }
+
+    private static List<Course> freeze(List<Course> courses) {
+        if (courses == null || courses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(courses);
+    }
+
+    private int cellIndex(int week, int day, int slot) {
+        return (bucket(week) * DAYS + day) * SLOTS + (slot - 1);
+    }
+
+    private int bucket(int week) {
+        return Math.min(week, maxWeek + 1);
+    }
+
+    private boolean isValid(int week, int weekday) {
+        return week >= ALL_WEEKS && weekday >= 1 && weekday <= DAYS;
+    }
+
+    /**
+     * 获取某周某天某节的所有课程
+     * @param week 周次，{@link #ALL_WEEKS} 表示全部周次
+     * @param weekday 星期（1-7）
+     * @param slot 大节（1-5）
+     */
+    public List<Course> getCourses(int week, int weekday, int slot) {
+        if (!isValid(week, weekday) || slot < 1 || slot > SLOTS) {
+            return Collections.emptyList();
+        }
+        return cellCourses[cellIndex(week, weekday - 1, slot)];
+    }
+
+    /**
+     * 获取格子中用于显示的课程（起始周最早的一门），没有课程时返回 null
+     */
+    public Course getPrimaryCourse(int week, int weekday, int slot) {
+        if (!isValid(week, weekday) || slot < 1 || slot > SLOTS) {
+            return null;
+        }
+        return primaryCourses[cellIndex(week, weekday - 1, slot)];
+    }
+
+    /**
+     * 获取格子中重叠的课程数量，用于角标显示
+     */
+    public int getOverlapCount(int week, int weekday, int slot) {
+        return getCourses(week, weekday, slot).size();
+    }
+
+    /**
+     * 获取某周某天的所有课程，保持原有顺序
+     */
+    public List<Course> getCoursesOfDay(int week, int weekday) {
+        if (!isValid(week, weekday)) {
+            return Collections.emptyList();
+        }
+        return dayCourses[bucket(week) * DAYS + weekday - 1];
+    }
+
+    /**
+     * 有课的周次位图，第 n 位表示第 n 周有课
+     */
+    public long getScheduledWeekMask() {
+        return scheduledWeekMask;
+    }
+
+    public boolean hasCoursesInWeek(int week) {
+        if (week > maxWeek) {
+            // 超出学期的周次只有不限周次的课程
+            for (int day = 1; day <= DAYS; day++) {
+                if (!getCoursesOfDay(week, day).isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return week >= 1 && (scheduledWeekMask & (1L << week)) != 0;
+    }
+
+    /**
+     * 学期周数：至少24周，有课程安排在更晚的周次时为最晚的周次
+     */
+    public int getMaxWeek() {
+        return maxWeek;
+    }
+
+    /**
+     * 构建索引所用的按星期分组的课程列表
+     */
+    public List<List<Course>> getWeeklyCourses() {
+        return weeklyCourses;
+    }
+}
@@ -0,0 +1,50 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 标准课程与自定义课程的合并
+ */
+public final class ScheduleMerger {
+    private ScheduleMerger() {
+    }
+
+    /**
+     * 将自定义课程按星期展开为与标准课程相同的7天列表，多选星期的课程每天各生成一个副本
+     */
+    public static List<List<Course>> toWeeklyCourses(List<CustomCourse> customCourses) {
+        List<List<Course>> result = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            result.add(new ArrayList<>());
+        }
+
+        for (CustomCourse customCourse : customCourses) {
+            for (int weekday : customCourse.getWeekdays()) {
+                if (weekday >= 1 && weekday <= 7) {
+                    // classTime只包含对应的星期数字
+                    result.get(weekday - 1).add(customCourse.toCourseForWeekday(weekday));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 每天先放标准课程，再放自定义课程
+     */
+    public static List<List<Course>> merge(List<List<Course>> standardCourses, List<List<Course>> customCourses) {
+        List<List<Course>> mergedCourses = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            List<Course> dayCourses = new ArrayList<>();
+            if (i < standardCourses.size()) {
+                dayCourses.addAll(standardCourses.get(i));
+            }
+            if (i < customCourses.size()) {
+                dayCourses.addAll(customCourses.get(i));
+            }
+            mergedCourses.add(dayCourses);
+        }
+        return mergedCourses;
+    }
+}
@@ -0,0 +1,101 @@
+package cn.pylin.xykcb;
+
+import java.util.List;
+
+/**
+ * 整个学期的课程分布：每周每天每大节的课程数，以及每周的总节数
+ * 只遍历一次课程列表，直接使用预先计算好的周次位图和节次位图，不按格子逐个判断周次
+ */
+public final class TermOverview {
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+    private static final int CELLS_PER_WEEK = DAYS * SLOTS;
+
+    private final int weekCount;
+    // [周次-1][星期-1][大节-1] 展开的课程数
+    private final int[] cellCounts;
+    private final int[] weekClassCounts;
+    private final int maxCellCount;
+    private final int maxWeekClassCount;
+
+    private TermOverview(int weekCount, int[] cellCounts, int[] weekClassCounts) {
+        this.weekCount = weekCount;
+        this.cellCounts = cellCounts;
+        this.weekClassCounts = weekClassCounts;
+        int maxCell = 0;
+        for (int count : cellCounts) {
+            maxCell = Math.max(maxCell, count);
+        }
+        int maxWeek = 0;
+        for (int count : weekClassCounts) {
+            maxWeek = Math.max(maxWeek, count);
+        }
+        this.maxCellCount = maxCell;
+        this.maxWeekClassCount = maxWeek;
+    }
+
+    /**
+     * 统计索引中全部课程的分布
+     * @param minWeekCount 至少覆盖的周数（如周次选择器的周数），课程更多时按实际最大周次
+     */
+    public static TermOverview compute(ScheduleIndex index, int minWeekCount) {
+        int weekCount = Math.max(minWeekCount, index.getMaxWeek());
+        int[] cellCounts = new int[weekCount * CELLS_PER_WEEK];
+        int[] weekClassCounts = new int[weekCount];
+        // 所有周次都上的课程用这个位图代替课程自身的周次位图
+        long allWeeksMask = weekCount >= 63 ? -2L : ((1L << (weekCount + 1)) - 2);
+
+        for (List<Course> dayCourses : index.getWeeklyCourses()) {
+            for (Course course : dayCourses) {
+                int weekday = course.getWeekday();
+                int slotMask = (course.getSlotMask() >>> 1) & ((1 << SLOTS) - 1);
+                if (weekday < 1 || weekday > DAYS || slotMask == 0) {
+                    continue;
+                }
+                int slotCount = Integer.bitCount(slotMask);
+                long weekMask = (course.isAllWeeks() ? allWeeksMask : course.getWeekMask()) & allWeeksMask;
+                // 依次取出周次位图中的每一位
+                while (weekMask != 0) {
+                    int week = Long.numberOfTrailingZeros(weekMask);
+                    weekMask &= weekMask - 1;
+                    int base = (week - 1) * CELLS_PER_WEEK + (weekday - 1) * SLOTS;
+                    int slots = slotMask;
+                    while (slots != 0) {
+                        cellCounts[base + Integer.numberOfTrailingZeros(slots)]++;
+                        slots &= slots - 1;
+                    }
+                    weekClassCounts[week - 1] += slotCount;
+                }
+            }
+        }
+        return new TermOverview(weekCount, cellCounts, weekClassCounts);
+    }
+
+    public int getWeekCount() { return weekCount; }
+
+    /**
+     * @param week 周次（从1开始）
+     * @param weekday 星期（1-7）
+     * @param slot 大节（1-5）
+     */
+    public int getCellCount(int week, int weekday, int slot) {
+        if (week < 1 || week > weekCount) {
+            return 0;
+        }
+        return cellCounts[(week - 1) * CELLS_PER_WEEK + (weekday - 1) * SLOTS + slot - 1];
+    }
+
+    /** 某周的上课节数（大节），同一格子有多门课时分别计数 */
+    public int getWeekClassCount(int week) {
+        if (week < 1 || week > weekCount) {
+            return 0;
+        }
+        return weekClassCounts[week - 1];
+    }
+
+    /** 所有格子中课程数的最大值，用于热力图配色 */
+    public int getMaxCellCount() { return maxCellCount; }
+
+    /** 所有周次中上课节数的最大值 */
+    public int getMaxWeekClassCount() { return maxWeekClassCount; }
+}
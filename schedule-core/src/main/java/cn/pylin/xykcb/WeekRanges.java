@@ -0,0 +1,104 @@
+package cn.pylin.xykcb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 周次文本与周次列表之间的转换
+ */
+public final class WeekRanges {
+    // 范围格式无法解析时使用的默认周次
+    private static final int DEFAULT_LAST_WEEK = 16;
+
+    private WeekRanges() {
+    }
+
+    /**
+     * 解析用户输入的周次，例如"1,3,5-8,10,12-15"，忽略无效的单个周次
+     */
+    public static List<Integer> parse(String weeks) {
+        List<Integer> weekList = new ArrayList<>();
+        String[] parts = weeks.split(",");
+        for (String part : parts) {
+            part = part.trim();
+            if (part.contains("-")) {
+                // 范围格式，如"5-8"
+                String[] range = part.split("-");
+                if (range.length == 2) {
+                    try {
+                        int startWeek = Integer.parseInt(range[0].trim());
+                        int endWeek = Integer.parseInt(range[1].trim());
+                        for (int week = startWeek; week <= endWeek; week++) {
+                            weekList.add(week);
+                        }
+                    } catch (NumberFormatException e) {
+                        // 如果解析失败，使用默认周次
+                        for (int week = 1; week <= DEFAULT_LAST_WEEK; week++) {
+                            weekList.add(week);
+                        }
+                    }
+                }
+            } else {
+                // 单个周次，如"1"或"3"
+                try {
+                    weekList.add(Integer.parseInt(part));
+                } catch (NumberFormatException e) {
+                    // 忽略无效的周次
+                }
+            }
+        }
+        return weekList;
+    }
+
+    /**
+     * 将逗号分隔的周次数字转换为友好的显示格式
+     * 例如："2,3,4,6,7,8" -> "2-4、6-8"
+     * "2,4,5,6" -> "2、4-6"
+     */
+    public static String format(String weekDetails) {
+        if (weekDetails == null || weekDetails.isEmpty()) {
+            return "";
+        }
+
+        List<Integer> weeks = new ArrayList<>();
+        for (String weekStr : weekDetails.split(",")) {
+            try {
+                weeks.add(Integer.parseInt(weekStr.trim()));
+            } catch (NumberFormatException e) {
+                // 忽略无效数字
+            }
+        }
+        if (weeks.isEmpty()) {
+            return "";
+        }
+        Collections.sort(weeks);
+
+        StringBuilder result = new StringBuilder();
+        int start = weeks.get(0);
+        int end = weeks.get(0);
+        for (int i = 1; i < weeks.size(); i++) {
+            if (weeks.get(i) == end + 1) {
+                // 连续数字，扩展范围
+                end = weeks.get(i);
+            } else {
+                appendRange(result, start, end);
+                start = weeks.get(i);
+                end = weeks.get(i);
+            }
+        }
+        appendRange(result, start, end);
+        return result.toString();
+    }
+
+    private static void appendRange(StringBuilder result, int start, int end) {
+        if (result.length() > 0) {
+            result.append("、");
+        }
+        if (start == end) {
+            result.append(start);
+        } else {
+            result.append(start).append("-").append(end);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package cn.pylin.xykcb;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 某一周（或全部周次）课表中 7x5 个格子的显示内容
+ */
+public final class WeekRenderModel {
+    private static final int DAYS = 7;
+    private static final int SLOTS = 5;
+    private static final String[] CLEAN_LOCATION_SUFFIXES = {
+            "(智慧教室)", "（智慧教室）", "(多媒体)", "（多媒体）", "(语音室)", "（语音室）"
+    };
+
+    private final int week;
+    private final boolean landscape;
+    private final CellRenderModel[] cells;
+
+    private WeekRenderModel(int week, boolean landscape, CellRenderModel[] cells) {
+        this.week = week;
+        this.landscape = landscape;
+        this.cells = cells;
+    }
+
+    /**
+     * 根据索引构建一周的显示内容
+     * @param week 周次，{@link ScheduleIndex#ALL_WEEKS} 表示全部周次
+     * @param colorIndexes 课程名 -> 调色板下标，调用方需保证构建期间不被修改
+     * @param landscape 横屏时使用更紧凑的文本格式
+     */
+    public static WeekRenderModel build(ScheduleIndex index, int week, Map<String, Integer> colorIndexes,
+                                        boolean landscape) {
+        CellRenderModel[] cells = new CellRenderModel[DAYS * SLOTS];
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            for (int day = 1; day <= DAYS; day++) {
+                cells[cellIndex(day, slot)] = buildCell(index, week, day, slot, colorIndexes, landscape);
+            }
+        }
+        return new WeekRenderModel(week, landscape, cells);
+    }
+
+    /**
+     * 由已有的格子组成一周，格子按 (大节-1)*7+星期-1 排列，供从缓存恢复时使用
+     */
+    public static WeekRenderModel of(int week, boolean landscape, CellRenderModel[] cells) {
+        if (cells.length != DAYS * SLOTS) {
+            throw new IllegalArgumentException("cells.length must be " + DAYS * SLOTS);
+        }
+        return new WeekRenderModel(week, landscape, cells.clone());
+    }
+
+    public int getWeek() { return week; }
+
+    public boolean isLandscape() { return landscape; }
+
+    /**
+     * @param weekday 星期（1-7）
+     * @param slot 大节（1-5）
+     */
+    public CellRenderModel getCell(int weekday, int slot) {
+        return cells[cellIndex(weekday, slot)];
+    }
+
+    private static int cellIndex(int weekday, int slot) {
+        return (slot - 1) * DAYS + weekday - 1;
+    }
+
+    private static CellRenderModel buildCell(ScheduleIndex index, int week, int weekday, int slot,
+                                             Map<String, Integer> colorIndexes, boolean landscape) {
+        Course displayCourse = index.getPrimaryCourse(week, weekday, slot);
+        if (displayCourse == null) {
+            return CellRenderModel.EMPTY;
+        }
+        List<Course> courses = index.getCourses(week, weekday, slot);
+        Integer colorIndex = colorIndexes.get(displayCourse.getCourseName());
+        return new CellRenderModel(buildCellText(displayCourse, landscape),
+                colorIndex != null ? colorIndex : 0, courses.size(), courses);
+    }
+
+    private static String buildCellText(Course displayCourse, boolean landscape) {
+        String courseName = displayCourse.getCourseName();
+        // 检查是否为自定义课程
+        boolean isCustomCourse = courseName.contains("(自定义)") || displayCourse.getLocation().contains("(自定义)");
+        if (isCustomCourse) {
+            courseName = courseName + " (自定义)";
+        }
+        String shortenedName = courseName;
+        if (getVisualLength(courseName) > 9) {
+            shortenedName = truncateString(courseName, 5, 0);
+        }
+
+        String location = cleanLocation(displayCourse.getLocation());
+        if (getVisualLength(location) > 6) {
+            location = truncateString(location, 5, 0);
+        }
+
+        String teacher = splitTeachers(displayCourse.getTeacher());
+        if (getVisualLength(teacher) > 6) {
+            teacher = truncateString(teacher, 5, 0);
+        }
+
+        String text;
+        if (landscape) {
+            // 横屏时减少换行，使用更紧凑的格式
+            text = shortenedName + "\n" + location + "\n" + teacher;
+        } else {
+            text = shortenedName + "\n\n" + location + "\n" + teacher + "\n";
+        }
+        return text.trim();
+    }
+
+    // 去掉教室类型后缀，只在包含括号时才做替换
+    private static String cleanLocation(String location) {
+        if (location.indexOf('(') >= 0 || location.indexOf('（') >= 0) {
+            for (String suffix : CLEAN_LOCATION_SUFFIXES) {
+                location = location.replace(suffix, "");
+            }
+        }
+        return location.trim();
+    }
+
+    // 多位教师按分隔符换行显示
+    private static String splitTeachers(String teacher) {
+        StringBuilder builder = null;
+        for (int i = 0; i < teacher.length(); i++) {
+            char c = teacher.charAt(i);
+            boolean separator = c == ',' || c == '，' || c == '、' || c == ';' || c == '；';
+            if (separator && builder == null) {
+                builder = new StringBuilder(teacher.length());
+                builder.append(teacher, 0, i);
+            }
+            if (builder != null) {
+                builder.append(separator ? '\n' : c);
+            }
+        }
+        return builder != null ? builder.toString() : teacher;
+    }
+
+    private static String truncateString(String input, int frontLength, int backLength) {
+        int visualLength = getVisualLength(input);
+        if (visualLength > frontLength + backLength) {
+            double visualCutLength = 0;
+            int realCutIndex = 0;
+
+            while (visualCutLength < frontLength && realCutIndex < input.length()) {
+                char c = input.charAt(realCutIndex);
+                visualCutLength += isEnglishLetter(c) ? 0.5 : 1;
+                realCutIndex++;
+            }
+
+            String firstPart = input.substring(0, realCutIndex);
+
+            double reverseVisualCutLength = 0;
+            int reverseRealCutIndex = input.length();
+
+            while (reverseVisualCutLength < backLength && reverseRealCutIndex > 0) {
+                reverseRealCutIndex--;
+                char c = input.charAt(reverseRealCutIndex);
+                reverseVisualCutLength += isEnglishLetter(c) ? 0.5 : 1;
+            }
+
+            String lastPart = input.substring(reverseRealCutIndex);
+
+            return firstPart + "..." + lastPart;
+        }
+        return input;
+    }
+
+    private static int getVisualLength(String input) {
+        int englishCount = 0;
+        for (int i = 0; i < input.length(); i++) {
+            if (isEnglishLetter(input.charAt(i))) {
+                englishCount++;
+            }
+        }
+        int otherCount = input.length() - englishCount;
+        return otherCount + (englishCount + 1) / 2;
+    }
+
+    private static boolean isEnglishLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -24,3 +24,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "小雨课程表"
 include(":app")
+include(":schedule-core")